@@ -0,0 +1,130 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style harness: calibrated batches, warmup and measurement iterations, results as
+ * JSON so runs of different releases can be compared.
+ */
+final class Bench {
+
+    interface Op {
+        // Return something derived from the work so it can't be optimized away
+        long run();
+    }
+
+    static final class Result {
+        final String benchmark;
+        final int param;
+        final double nsPerOp;
+        final double errorNs;
+        final int iterations;
+
+        Result(String benchmark, int param, double nsPerOp, double errorNs, int iterations) {
+            this.benchmark = benchmark;
+            this.param = param;
+            this.nsPerOp = nsPerOp;
+            this.errorNs = errorNs;
+            this.iterations = iterations;
+        }
+    }
+
+    private static final long ITERATION_NANOS = 100000000L;
+
+    // Results of every op end up here
+    static volatile long sink;
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final List<Result> results = new ArrayList<>();
+
+    Bench(int warmupIterations, int measureIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+    }
+
+    Result run(String benchmark, int param, Op op) {
+        // Grow the batch until one takes a noticeable amount of time
+        long batch = 1;
+        while (time(op, batch) < ITERATION_NANOS / 10) {
+            batch *= 2;
+        }
+        batch = Math.max(1, batch * 10);
+
+        for (int i = 0; i < warmupIterations; i++) {
+            time(op, batch);
+        }
+
+        double[] samples = new double[measureIterations];
+        double mean = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            samples[i] = (double) time(op, batch) / batch;
+            mean += samples[i];
+        }
+        mean /= measureIterations;
+
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        double error = measureIterations > 1 ? Math.sqrt(variance / (measureIterations - 1)) : 0;
+
+        Result result = new Result(benchmark, param, mean, error, measureIterations);
+        results.add(result);
+        System.out.printf(Locale.US, "%-24s %6d %14.1f ns/op  +- %.1f%n", benchmark, param, mean, error);
+        return result;
+    }
+
+    private static long time(Op op, long batch) {
+        long value = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < batch; i++) {
+            value += op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += value;
+        return elapsed;
+    }
+
+    void writeJson(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n");
+            out.write(String.format(Locale.US, "  \"timestamp\": %d,\n", System.currentTimeMillis()));
+            out.write("  \"java\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write(String.format(Locale.US, "  \"cores\": %d,\n", Runtime.getRuntime().availableProcessors()));
+            out.write("  \"results\": [\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                out.write(String.format(Locale.US,
+                        "    {\"benchmark\": \"%s\", \"param\": %d, \"nsPerOp\": %.2f, \"errorNs\": %.2f, \"iterations\": %d}%s\n",
+                        result.benchmark, result.param, result.nsPerOp, result.errorNs, result.iterations,
+                        i < results.size() - 1 ? "," : ""));
+            }
+            out.write("  ]\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.benchmark;
+
+import java.io.File;
+
+import de.interwebs.pesdk.catalog.Colors;
+import de.interwebs.pesdk.catalog.PaletteCache;
+import de.interwebs.pesdk.lut.LutLayout;
+
+/**
+ * Per-entry parsing work of the custom catalog: hex colors, palettes, filter id layouts and
+ * those over catalogs of 10 to 10,000 entries.
+ *
+ * Usage: CatalogBenchmark [results.json]
+ */
+public final class CatalogBenchmark {
+
+    private static final int[] SIZES = {10, 100, 1000, 10000};
+
+    // Volatile so the JIT can't fold the single-value benchmarks into constants
+    private static volatile String shortColor = "#a3f";
+    private static volatile String longColor = "#AA33FF";
+    private static volatile String alphaColor = "#80AA33FF";
+    private static volatile String layoutFilterId = "warm_8_8_64";
+    private static volatile String plainFilterId = "warm";
+
+    public static void main(String[] args) throws Exception {
+        File output = new File(args.length > 0 ? args[0] : "build/benchmark-results/catalog.json");
+        Bench bench = new Bench(5, 5);
+
+        bench.run("color.short", 1, new Bench.Op() {
+            @Override
+            public long run() {
+                return Colors.parse(shortColor);
+            }
+        });
+        bench.run("color.long", 1, new Bench.Op() {
+            @Override
+            public long run() {
+                return Colors.parse(longColor);
+            }
+        });
+        bench.run("color.alpha", 1, new Bench.Op() {
+            @Override
+            public long run() {
+                return Colors.parse(alphaColor);
+            }
+        });
+        bench.run("filterId.layout", 1, new Bench.Op() {
+            @Override
+            public long run() {
+                return LutLayout.fromFilterId(layoutFilterId).textureSize;
+            }
+        });
+        bench.run("filterId.default", 1, new Bench.Op() {
+            @Override
+            public long run() {
+                return LutLayout.fromFilterId(plainFilterId).textureSize;
+            }
+        });
+
+        for (int size : SIZES) {
+            final String[] colors = colors(size);
+            final String[] filterIds = filterIds(size);
+
+            bench.run("catalog.colors", size, new Bench.Op() {
+                @Override
+                public long run() {
+                    long value = 0;
+                    for (String color : colors) {
+                        value += Colors.parse(color);
+                    }
+                    return value;
+                }
+            });
+            // Repeated open of the same palette: parse, then hit the interned result
+            final PaletteCache<int[]> palettes = new PaletteCache<>(32, new PaletteCache.Factory<int[]>() {
+                @Override
+                public int[] create(int[] argb) {
+                    return argb;
+                }
+            });
+            bench.run("catalog.palette", size, new Bench.Op() {
+                @Override
+                public long run() {
+                    int[] argb = new int[colors.length];
+                    for (int i = 0; i < colors.length; i++) {
+                        argb[i] = Colors.parse(colors[i]);
+                    }
+                    return palettes.intern(argb).length;
+                }
+            });
+            bench.run("catalog.filters", size, new Bench.Op() {
+                @Override
+                public long run() {
+                    long value = 0;
+                    for (String filterId : filterIds) {
+                        value += LutLayout.fromFilterId(filterId).vTiles;
+                    }
+                    return value;
+                }
+            });
+        }
+
+        bench.writeJson(output);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+    // Mix of the notations found in catalogs
+    static String[] colors(int size) {
+        String[] colors = new String[size];
+        for (int i = 0; i < size; i++) {
+            int rgb = (int) ((i * 2654435761L) & 0xffffff);
+            switch (i % 3) {
+                case 0:
+                    colors[i] = String.format("#%03x", rgb & 0xfff);
+                    break;
+                case 1:
+                    colors[i] = String.format("#%06X", rgb);
+                    break;
+                default:
+                    colors[i] = String.format("%06x", rgb);
+                    break;
+            }
+        }
+        return colors;
+    }
+
+    static String[] filterIds(int size) {
+        String[] filterIds = new String[size];
+        for (int i = 0; i < size; i++) {
+            filterIds[i] = i % 4 == 0 ? "filter" + i : "filter" + i + "_8_8_64";
+        }
+        return filterIds;
+    }
+}
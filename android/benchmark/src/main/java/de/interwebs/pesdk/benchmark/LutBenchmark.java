@@ -0,0 +1,109 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.benchmark;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.interwebs.pesdk.lut.Lut3D;
+import de.interwebs.pesdk.lut.LutEngine;
+import de.interwebs.pesdk.lut.LutFile;
+import de.interwebs.pesdk.lut.LutLayout;
+
+/**
+ * Megapixels per second of the CPU LUT engine by thread count.
+ *
+ * Usage: LutBenchmark [megapixels] [iterations]
+ */
+public final class LutBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int megapixels = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // 8x8 tiles of 64px, the common 512x512 LUT layout
+        LutLayout layout = new LutLayout(8, 8, 64);
+        long compileStart = System.nanoTime();
+        Lut3D lut = Lut3D.compile(texture(layout), 512, 512, layout);
+        System.out.printf("compile %dx%dx%d LUT: %.2f ms%n", lut.sizeR(), lut.sizeG(), lut.sizeB(), (System.nanoTime() - compileStart) / 1e6);
+
+        // Load path used once a LUT has been compiled: map the cached file
+        File file = File.createTempFile("benchmark", ".lut");
+        file.deleteOnExit();
+        LutFile.write(file, lut, layout);
+        long mapStart = System.nanoTime();
+        lut = LutFile.map(file);
+        System.out.printf("map cached LUT: %.2f ms%n", (System.nanoTime() - mapStart) / 1e6);
+
+        int width = 4000;
+        int height = megapixels * 1000000 / width;
+        int[] source = new int[width * height];
+        Random random = new Random(42);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        int[] pixels = new int[source.length];
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d x %d (%.1f MP), %d cores%n", width, height, width * height / 1e6, cores);
+        System.out.println("threads\tMP/s");
+
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(cores, threads * 2) : cores + 1) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                LutEngine engine = new LutEngine(pool, threads);
+
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    System.arraycopy(source, 0, pixels, 0, source.length);
+                    engine.apply(lut, pixels, width, height, 1f);
+                }
+
+                long total = 0;
+                for (int i = 0; i < iterations; i++) {
+                    System.arraycopy(source, 0, pixels, 0, source.length);
+                    long start = System.nanoTime();
+                    engine.apply(lut, pixels, width, height, 1f);
+                    total += System.nanoTime() - start;
+                }
+
+                double seconds = total / 1e9 / iterations;
+                System.out.printf("%d\t%.1f%n", threads, width * height / 1e6 / seconds);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Identity LUT texture in PESDK tile layout
+    static int[] texture(LutLayout layout) {
+        int size = layout.textureSize;
+        int width = size * layout.hTiles;
+        int height = size * layout.vTiles;
+        int levels = layout.vTiles * layout.hTiles;
+        int[] argb = new int[width * height];
+        for (int b = 0; b < levels; b++) {
+            int tileX = (b % layout.hTiles) * size;
+            int tileY = (b / layout.hTiles) * size;
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    argb[(tileY + g) * width + tileX + r] = 0xff000000
+                            | (r * 255 / (size - 1)) << 16
+                            | (g * 255 / (size - 1)) << 8
+                            | (b * 255 / (levels - 1));
+                }
+            }
+        }
+        return argb;
+    }
+}
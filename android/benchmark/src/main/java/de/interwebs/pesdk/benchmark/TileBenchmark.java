@@ -0,0 +1,276 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.benchmark;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import de.interwebs.pesdk.lut.Lut3D;
+import de.interwebs.pesdk.lut.LutLayout;
+import de.interwebs.pesdk.tile.BandRenderer;
+import de.interwebs.pesdk.tile.BandSink;
+import de.interwebs.pesdk.tile.BandSource;
+import de.interwebs.pesdk.tile.BandStage;
+import de.interwebs.pesdk.tile.JpegWriter;
+import de.interwebs.pesdk.tile.LutStage;
+import de.interwebs.pesdk.tile.Orientation;
+
+/**
+ * Tiled against whole-image rendering of filter and blur stages into a JPEG.
+ *
+ * Checks first that every band height gives the same pixels and the same JPEG bytes as a single
+ * band over the whole image, and that the JPEG decodes to the image, then times both. Also
+ * checks that bands read from a crop of the stored pixels in any orientation match cropping
+ * the oriented image, which is how RecipeRenderer reads them.
+ *
+ * Usage: TileBenchmark [results.json]
+ */
+public final class TileBenchmark {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 750;
+    private static final int[] BAND_HEIGHTS = {1, 7, 16, 64, 256};
+    private static final int QUALITY = 90;
+
+    public static void main(String[] args) throws Exception {
+        File output = new File(args.length > 0 ? args[0] : "build/benchmark-results/tile.json");
+
+        final int[] image = image(WIDTH, HEIGHT);
+        LutLayout layout = new LutLayout(8, 8, 64);
+        Lut3D lut = Lut3D.compile(LutBenchmark.texture(layout), 512, 512, layout);
+        // Blur on both sides of the filter, so overlaps add up
+        final List<BandStage> stages = Arrays.<BandStage>asList(new BoxBlur(2), new LutStage(lut, 200), new BoxBlur(3));
+
+        int[] expected = pixels(image, HEIGHT, stages);
+        byte[] expectedJpeg = jpeg(image, HEIGHT, stages);
+        for (int bandHeight : BAND_HEIGHTS) {
+            if (!Arrays.equals(expected, pixels(image, bandHeight, stages))) {
+                throw new AssertionError("Pixels of " + bandHeight + " row bands differ from the whole image");
+            }
+            if (!Arrays.equals(expectedJpeg, jpeg(image, bandHeight, stages))) {
+                throw new AssertionError("JPEG of " + bandHeight + " row bands differs from the whole image");
+            }
+        }
+        checkDecodes(expectedJpeg, expected);
+        System.out.println("Tiled output identical for band heights " + Arrays.toString(BAND_HEIGHTS));
+        checkOrientations(image);
+
+        Bench bench = new Bench(3, 5);
+        for (final int bandHeight : new int[]{HEIGHT, 64, 256}) {
+            bench.run("tile.jpeg", bandHeight, new Bench.Op() {
+                @Override
+                public long run() {
+                    try {
+                        return jpeg(image, bandHeight, stages).length;
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            System.out.printf("  band buffer %d KiB%n", BandRenderer.bufferBytes(WIDTH, HEIGHT, bandHeight, stages) / 1024);
+        }
+
+        bench.writeJson(output);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+    private static int[] pixels(final int[] image, int bandHeight, List<BandStage> stages) throws IOException {
+        final int[] result = new int[image.length];
+        BandRenderer.render(WIDTH, HEIGHT, bandHeight, source(image), stages, new BandSink() {
+            private int row;
+
+            @Override
+            public void write(int[] pixels, int offset, int rows) {
+                System.arraycopy(pixels, offset, result, row * WIDTH, rows * WIDTH);
+                row += rows;
+            }
+        });
+        return result;
+    }
+
+    private static byte[] jpeg(int[] image, int bandHeight, List<BandStage> stages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegWriter writer = new JpegWriter(out, WIDTH, HEIGHT, QUALITY);
+        BandRenderer.render(WIDTH, HEIGHT, bandHeight, source(image), stages, writer);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static BandSource source(final int[] image) {
+        return new BandSource() {
+            @Override
+            public void read(int top, int rows, int[] pixels) {
+                System.arraycopy(image, top * WIDTH, pixels, 0, rows * WIDTH);
+            }
+        };
+    }
+
+    // Every EXIF orientation, and every rotation on top of it, with a crop given relative to the oriented image
+    private static void checkOrientations(int[] image) {
+        float[] crop = {0.1f, 0.2f, 0.7f, 0.9f};
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            for (boolean mirrored : new boolean[]{false, true}) {
+                Orientation orientation = new Orientation(rotation, mirrored);
+                boolean swap = orientation.swapsAxes();
+                int orientedWidth = swap ? HEIGHT : WIDTH;
+                int orientedHeight = swap ? WIDTH : HEIGHT;
+                int[] expected = crop(oriented(image, orientation), orientedWidth,
+                        Math.round(crop[0] * orientedWidth), Math.round(crop[1] * orientedHeight),
+                        Math.round(crop[2] * orientedWidth), Math.round(crop[3] * orientedHeight));
+
+                // Crop of the stored pixels as RecipeRenderer.cropRect computes it
+                float[] relative = orientation.sourceRect(crop[0], crop[1], crop[2], crop[3]);
+                int left = Math.round(relative[0] * WIDTH);
+                int top = Math.round(relative[1] * HEIGHT);
+                int cropWidth = Math.round(relative[2] * WIDTH) - left;
+                int cropHeight = Math.round(relative[3] * HEIGHT) - top;
+                int width = swap ? cropHeight : cropWidth;
+                int height = swap ? cropWidth : cropHeight;
+                if (expected.length != width * height) {
+                    throw new AssertionError("Crop of " + orientation + " is " + width + "x" + height + ", not " + expected.length + " pixels");
+                }
+
+                for (int bandHeight : BAND_HEIGHTS) {
+                    int[] actual = new int[width * height];
+                    int[] band = new int[width * bandHeight];
+                    for (int row = 0; row < height; row += bandHeight) {
+                        int rows = Math.min(bandHeight, height - row);
+                        int[] region = orientation.region(cropWidth, cropHeight, row, rows);
+                        int[] source = crop(image, WIDTH, left + region[0], top + region[1], left + region[2], top + region[3]);
+                        orientation.copy(source, region[2] - region[0], region[3] - region[1], band, width, rows);
+                        System.arraycopy(band, 0, actual, row * width, rows * width);
+                    }
+                    if (!Arrays.equals(expected, actual)) {
+                        throw new AssertionError("Bands of " + bandHeight + " rows at " + orientation + " differ from the oriented crop");
+                    }
+                }
+            }
+        }
+        System.out.println("Oriented bands identical for all orientations");
+    }
+
+    // The whole image mirrored, then rotated
+    private static int[] oriented(int[] image, Orientation orientation) {
+        int[] result = new int[image.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int mx = orientation.mirrored ? WIDTH - 1 - x : x;
+                int target;
+                switch (orientation.rotation) {
+                    case 90:
+                        target = mx * HEIGHT + (HEIGHT - 1 - y);
+                        break;
+                    case 180:
+                        target = (HEIGHT - 1 - y) * WIDTH + (WIDTH - 1 - mx);
+                        break;
+                    case 270:
+                        target = (WIDTH - 1 - mx) * HEIGHT + y;
+                        break;
+                    default:
+                        target = y * WIDTH + mx;
+                        break;
+                }
+                result[target] = image[y * WIDTH + x];
+            }
+        }
+        return result;
+    }
+
+    private static int[] crop(int[] image, int width, int left, int top, int right, int bottom) {
+        int[] result = new int[(right - left) * (bottom - top)];
+        for (int y = top; y < bottom; y++) {
+            System.arraycopy(image, y * width + left, result, (y - top) * (right - left), right - left);
+        }
+        return result;
+    }
+
+    // Lossy, but has to come out close to what went in
+    private static void checkDecodes(byte[] jpeg, int[] expected) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+        if (decoded == null || decoded.getWidth() != WIDTH || decoded.getHeight() != HEIGHT) {
+            throw new AssertionError("JPEG doesn't decode to " + WIDTH + "x" + HEIGHT);
+        }
+        long error = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int a = decoded.getRGB(x, y);
+                int b = expected[y * WIDTH + x];
+                for (int shift = 0; shift < 24; shift += 8) {
+                    error += Math.abs((a >> shift & 0xff) - (b >> shift & 0xff));
+                }
+            }
+        }
+        double mean = (double) error / (WIDTH * HEIGHT * 3);
+        if (mean > 4) {
+            throw new AssertionError("JPEG is off by " + mean + " per channel on average");
+        }
+        System.out.printf("JPEG %d bytes, off by %.2f per channel on average%n", jpeg.length, mean);
+    }
+
+    // Smooth gradients with noise, something in between a photo and random pixels
+    private static int[] image(int width, int height) {
+        int[] image = new int[width * height];
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = Math.min(255, x * 255 / width + random.nextInt(16));
+                int g = Math.min(255, y * 255 / height + random.nextInt(16));
+                int b = Math.min(255, (x + y) * 255 / (width + height) + random.nextInt(16));
+                image[y * width + x] = 0xff000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Vertical box blur standing in for the stages that need neighbouring rows, clamped to the
+     * rows it is given like a whole-image blur is to the image.
+     */
+    static final class BoxBlur implements BandStage {
+
+        private final int radius;
+
+        BoxBlur(int radius) {
+            this.radius = radius;
+        }
+
+        @Override
+        public int overlap() {
+            return radius;
+        }
+
+        @Override
+        public void apply(int[] pixels, int width, int top, int rows) {
+            int[] source = Arrays.copyOf(pixels, width * rows);
+            int count = 2 * radius + 1;
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < width; x++) {
+                    int r = 0;
+                    int g = 0;
+                    int b = 0;
+                    for (int dy = -radius; dy <= radius; dy++) {
+                        int color = source[Math.max(0, Math.min(rows - 1, y + dy)) * width + x];
+                        r += color >> 16 & 0xff;
+                        g += color >> 8 & 0xff;
+                        b += color & 0xff;
+                    }
+                    pixels[y * width + x] = 0xff000000 | (r / count) << 16 | (g / count) << 8 | b / count;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Batches that share an output folder and prefix write over each other's files, the cache must
+ * not hand out a file that now holds another image.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchRendererTest {
+
+    private static final int EXIF_NORMAL = 1;
+
+    private RecipeRenderer renderer;
+    private RenderCache cache;
+    private File dir;
+    private File outputs;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        AssetRegistry assets = new ResourceAssetRegistry(context, null);
+        renderer = new RecipeRenderer(context.getResources(), context.getContentResolver(), assets, new LutCache(context, assets));
+        cache = new RenderCache(16);
+        dir = new File(context.getCacheDir(), "batch-renderer-test");
+        outputs = new File(dir, "outputs");
+        assertTrue(outputs.isDirectory() || outputs.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        for (File parent : new File[]{outputs, dir}) {
+            File[] files = parent.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void outputWrittenOverByAnotherBatchIsNoHit() throws Exception {
+        String quarters = RecipeRendererTest.writeFixture(new File(dir, "quarters.jpg"), EXIF_NORMAL).getPath();
+        String gradient = RecipeRendererTest.writeGradient(new File(dir, "gradient.jpg"), EXIF_NORMAL).getPath();
+
+        RecipeRenderer.Result first = render(quarters);
+        assertFalse(first.cached);
+        // Same folder and prefix, so the same file as the first batch
+        RecipeRenderer.Result second = render(gradient);
+        assertFalse(second.cached);
+        assertEquals(first.path, second.path);
+
+        RecipeRenderer.Result again = render(quarters);
+        assertFalse("Hit on a file that holds another image", again.cached);
+        assertEquals(1, cache.evictions());
+        assertTopLeft(again.path, Color.RED);
+
+        // Intact again, so now it is one
+        RecipeRenderer.Result repeated = render(quarters);
+        assertTrue(repeated.cached);
+        assertTopLeft(repeated.path, Color.RED);
+    }
+
+    // One image batch into outputs with the same prefix every time
+    private RecipeRenderer.Result render(String input) throws Exception {
+        final RecipeRenderer.Result[] result = new RecipeRenderer.Result[1];
+        final Exception[] error = new Exception[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        EditRecipe recipe = new EditRecipe(null, 0, null, 0, null, CompiledCatalog.blendMode("normal"), 0);
+        BatchRenderer.Options options = new BatchRenderer.Options(outputs, "render_", 90, 0, Runtime.getRuntime().maxMemory() / 4, 0, null);
+        new BatchRenderer(renderer, cache).start(Collections.singletonList(input), recipe, options, new BatchRenderer.Listener() {
+            @Override
+            public void onImage(int index, @NonNull String input, @Nullable RecipeRenderer.Result rendered, @Nullable Exception failure, int completed) {
+                result[0] = rendered;
+                error[0] = failure;
+            }
+
+            @Override
+            public void onDone(int succeeded, int failed, long durationMs) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return result[0];
+    }
+
+    private static void assertTopLeft(String path, int expected) {
+        Bitmap bitmap = BitmapFactory.decodeFile(path);
+        assertTrue("Could not decode " + path, bitmap != null);
+        try {
+            int actual = bitmap.getPixel(10, 10);
+            int error = Math.abs(Color.red(actual) - Color.red(expected))
+                    + Math.abs(Color.green(actual) - Color.green(expected))
+                    + Math.abs(Color.blue(actual) - Color.blue(expected));
+            assertTrue(String.format("Top left is #%06x, not #%06x", actual & 0xffffff, expected & 0xffffff), error < 60);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
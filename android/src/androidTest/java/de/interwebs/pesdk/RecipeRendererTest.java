@@ -0,0 +1,258 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import de.interwebs.pesdk.exif.ExifOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Headless renders of a landscape photo stored sideways, i.e. tagged to be rotated by 90 degrees
+ * like portrait shots of most phone cameras. Every path has to turn it upright.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeRendererTest {
+
+    // Stored 400x300: red, green on top, blue, white below. Shown 300x400: blue, red on top, white, green below
+    private static final int STORED_WIDTH = 400;
+    private static final int STORED_HEIGHT = 300;
+    private static final int EXIF_ROTATE_90 = 6;
+    // Small enough that every render below takes a few bands, the last one short
+    private static final int BAND_HEIGHT = 64;
+
+    private RecipeRenderer renderer;
+    private File dir;
+    private String input;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        AssetRegistry assets = new ResourceAssetRegistry(context, null);
+        renderer = new RecipeRenderer(context.getResources(), context.getContentResolver(), assets, new LutCache(context, assets));
+        dir = new File(context.getCacheDir(), "recipe-renderer-test");
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+        input = writeFixture(new File(dir, "rotated.jpg"), EXIF_ROTATE_90).getPath();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void decodeTurnsUpright() throws IOException {
+        Bitmap bitmap = renderer.decode(input, 0);
+        try {
+            assertUpright(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Test
+    public void renderTurnsUpright() throws IOException {
+        for (boolean tiled : new boolean[]{false, true}) {
+            Bitmap bitmap = render(input, recipe(null, 0), tiled);
+            try {
+                assertUpright(bitmap);
+            } finally {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void cropIsRelativeToTheUprightImage() throws IOException {
+        // Top quarters as shown, which are stored on the left
+        RectF[] crops = {new RectF(0, 0, 0.5f, 0.5f), new RectF(0.5f, 0, 1, 0.5f)};
+        int[] colors = {Color.BLUE, Color.RED};
+        for (int i = 0; i < crops.length; i++) {
+            for (boolean tiled : new boolean[]{false, true}) {
+                Bitmap bitmap = render(input, recipe(crops[i], 0), tiled);
+                try {
+                    assertEquals(150, bitmap.getWidth());
+                    assertEquals(200, bitmap.getHeight());
+                    assertColor(bitmap, 75, 100, colors[i]);
+                } finally {
+                    bitmap.recycle();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotationAppliesOnTopOfTheOrientation() throws IOException {
+        for (boolean tiled : new boolean[]{false, true}) {
+            Bitmap bitmap = render(input, recipe(null, 90), tiled);
+            try {
+                // Upright turned by another 90 degrees: white, blue on top, green, red below
+                assertEquals(STORED_WIDTH, bitmap.getWidth());
+                assertEquals(STORED_HEIGHT, bitmap.getHeight());
+                assertColor(bitmap, 100, 75, Color.WHITE);
+                assertColor(bitmap, 300, 75, Color.BLUE);
+                assertColor(bitmap, 100, 225, Color.GREEN);
+                assertColor(bitmap, 300, 225, Color.RED);
+            } finally {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void tiledMatchesRender() throws IOException {
+        // Every stored pixel has its own color, so a band read from the wrong place shows
+        String gradient = writeGradient(new File(dir, "gradient.jpg"), EXIF_ROTATE_90).getPath();
+        RectF crop = new RectF(0.1f, 0.2f, 0.8f, 0.7f);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            EditRecipe recipe = new EditRecipe(null, 0, crop, rotation, "test_overlay", CompiledCatalog.blendMode("normal"), 1f);
+            Bitmap expected = render(gradient, recipe, false);
+            Bitmap actual = null;
+            try {
+                actual = render(gradient, recipe, true);
+                assertSimilar("Rotation " + rotation, expected, actual);
+            } finally {
+                expected.recycle();
+                if (actual != null) {
+                    actual.recycle();
+                }
+            }
+        }
+    }
+
+    private Bitmap render(String input, EditRecipe recipe, boolean tiled) throws IOException {
+        File output = new File(dir, "output.jpg");
+        if (tiled) {
+            renderer.renderTiled(input, output, recipe, BAND_HEIGHT, 95, null);
+        } else {
+            renderer.render(input, output, recipe, 0, 95);
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(output.getPath());
+        assertTrue("Could not decode " + output, bitmap != null);
+        return bitmap;
+    }
+
+    private static EditRecipe recipe(RectF crop, int rotation) {
+        return new EditRecipe(null, 0, crop, rotation, null, CompiledCatalog.blendMode("normal"), 0);
+    }
+
+    private static void assertUpright(Bitmap bitmap) {
+        assertEquals(STORED_HEIGHT, bitmap.getWidth());
+        assertEquals(STORED_WIDTH, bitmap.getHeight());
+        assertColor(bitmap, 75, 100, Color.BLUE);
+        assertColor(bitmap, 225, 100, Color.RED);
+        assertColor(bitmap, 75, 300, Color.WHITE);
+        assertColor(bitmap, 225, 300, Color.GREEN);
+    }
+
+    // Close enough after JPEG
+    private static void assertColor(Bitmap bitmap, int x, int y, int expected) {
+        int actual = bitmap.getPixel(x, y);
+        assertTrue(String.format("Pixel %d,%d is #%06x, not #%06x", x, y, actual & 0xffffff, expected & 0xffffff), error(actual, expected) < 60);
+    }
+
+    // Same size and, apart from the two JPEG encoders, the same pixels
+    private static void assertSimilar(String message, Bitmap expected, Bitmap actual) {
+        assertEquals(message + ": width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + ": height", expected.getHeight(), actual.getHeight());
+        long total = 0;
+        int samples = 0;
+        for (int y = 0; y < expected.getHeight(); y += 3) {
+            for (int x = 0; x < expected.getWidth(); x += 3) {
+                int error = error(actual.getPixel(x, y), expected.getPixel(x, y));
+                assertTrue(String.format("%s: pixel %d,%d is off by %d", message, x, y, error), error < 90);
+                total += error;
+                samples++;
+            }
+        }
+        assertTrue(message + ": mean error " + total / samples, total / samples < 10);
+    }
+
+    private static int error(int actual, int expected) {
+        return Math.abs(Color.red(actual) - Color.red(expected))
+                + Math.abs(Color.green(actual) - Color.green(expected))
+                + Math.abs(Color.blue(actual) - Color.blue(expected));
+    }
+
+    // Four colored quarters as JPEG with the given EXIF orientation
+    static File writeFixture(File file, int orientation) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(STORED_WIDTH, STORED_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        int[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.WHITE};
+        for (int i = 0; i < colors.length; i++) {
+            paint.setColor(colors[i]);
+            int left = i % 2 * STORED_WIDTH / 2;
+            int top = i / 2 * STORED_HEIGHT / 2;
+            canvas.drawRect(left, top, left + STORED_WIDTH / 2, top + STORED_HEIGHT / 2, paint);
+        }
+        return writeJpeg(file, bitmap, orientation);
+    }
+
+    // Red grows to the right, green downwards
+    static File writeGradient(File file, int orientation) throws IOException {
+        int[] pixels = new int[STORED_WIDTH * STORED_HEIGHT];
+        for (int y = 0; y < STORED_HEIGHT; y++) {
+            for (int x = 0; x < STORED_WIDTH; x++) {
+                pixels[y * STORED_WIDTH + x] = Color.rgb(x * 255 / (STORED_WIDTH - 1), y * 255 / (STORED_HEIGHT - 1), 128);
+            }
+        }
+        return writeJpeg(file, Bitmap.createBitmap(pixels, STORED_WIDTH, STORED_HEIGHT, Bitmap.Config.ARGB_8888), orientation);
+    }
+
+    // Recycles the bitmap
+    private static File writeJpeg(File file, Bitmap bitmap, int orientation) throws IOException {
+        OutputStream out = new ExifOutputStream(new FileOutputStream(file), orientationSegment(orientation));
+        try {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.JPEG, 95, out));
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    // APP1 with a big endian TIFF header and an IFD0 of just the Orientation
+    private static byte[] orientationSegment(int orientation) {
+        return new byte[]{
+                (byte) 0xff, (byte) 0xe1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+    }
+}
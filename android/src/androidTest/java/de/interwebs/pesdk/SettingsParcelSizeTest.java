@@ -0,0 +1,84 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import ly.img.android.sdk.models.state.manager.SettingsList;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * How many bytes of the launch Intent the SettingsList takes for custom catalogs of growing size.
+ * The binder transaction limit is 1 MB for everything in flight, so every sticker counts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingsParcelSizeTest {
+
+    private static final String TAG = "PESDK";
+
+    private static final int[] STICKERS = {0, 100, 400, 1600};
+    // Resource ids and a few strings, no bitmaps
+    private static final int MAX_BYTES_PER_STICKER = 1024;
+
+    @Test
+    public void parcelGrowsLinearlyWithTheCatalog() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        AssetRegistry assets = new ResourceAssetRegistry(context, null);
+        ThumbnailCache thumbnails = new ThumbnailCache(context);
+
+        int[] sizes = new int[STICKERS.length];
+        for (int i = 0; i < STICKERS.length; i++) {
+            SettingsList settingsList = new SettingsList();
+            CompiledCatalog.compile(assets, thumbnails, catalog(STICKERS[i])).applyTo(settingsList.getConfig());
+            sizes[i] = SessionTokens.parcelSize(settingsList);
+            Log.i(TAG, STICKERS[i] + " stickers parcel to " + sizes[i] + " bytes");
+        }
+
+        for (int i = 1; i < STICKERS.length; i++) {
+            int perSticker = (sizes[i] - sizes[i - 1]) / (STICKERS[i] - STICKERS[i - 1]);
+            assertTrue("Catalog doesn't show in the parcel", sizes[i] > sizes[i - 1]);
+            assertTrue(perSticker + " bytes per sticker between " + STICKERS[i - 1] + " and " + STICKERS[i], perSticker <= MAX_BYTES_PER_STICKER);
+        }
+    }
+
+    // One category of count stickers, the way JS passes them as `custom`
+    private static JavaOnlyMap catalog(int count) {
+        JavaOnlyArray stickers = new JavaOnlyArray();
+        for (int i = 0; i < count; i++) {
+            JavaOnlyMap sticker = new JavaOnlyMap();
+            sticker.putString("id", "sticker_" + i);
+            sticker.putString("label", "Sticker " + i);
+            stickers.pushMap(sticker);
+        }
+
+        JavaOnlyMap category = new JavaOnlyMap();
+        category.putString("id", "category");
+        category.putString("label", "Category");
+        category.putArray("stickers", stickers);
+
+        JavaOnlyArray categories = new JavaOnlyArray();
+        categories.pushMap(category);
+
+        JavaOnlyMap custom = new JavaOnlyMap();
+        custom.putBoolean("includeDefaultStickerCategories", false);
+        custom.putArray("stickerCategories", categories);
+        return custom;
+    }
+}
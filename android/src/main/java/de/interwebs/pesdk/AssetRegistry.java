@@ -0,0 +1,33 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.Nullable;
+
+import de.interwebs.pesdk.lut.LutLayout;
+
+/**
+ * Resolves catalog asset names to resource ids.
+ *
+ * Apps that apply `pesdk-catalog.gradle` get a generated implementation which maps every asset
+ * of their catalog manifest to its R constant, see PESDKPackage(AssetRegistry).
+ */
+public interface AssetRegistry {
+
+    // Drawable resource id or 0 if unknown
+    int drawable(String name);
+
+    // String resource id or 0 if unknown
+    int string(String name);
+
+    // Tile layout of a LUT filter or null if unknown
+    @Nullable
+    LutLayout lutLayout(String filterId);
+}
@@ -0,0 +1,135 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.interwebs.pesdk.exif.ExifAllowList;
+
+/**
+ * Renders one EditRecipe onto many images on a worker pool of its own.
+ *
+ * The pool is sized to the cores and to how many renders of the first image fit into the memory
+ * budget. The task finishing last reports the batch as done and shuts the pool down, so no
+ * thread waits on the batch.
+ */
+final class BatchRenderer {
+
+    private static final String TAG = "PESDK";
+
+    interface Listener {
+        // Called from the worker threads, result is null if rendering failed
+        void onImage(int index, @NonNull String input, @Nullable RecipeRenderer.Result result, @Nullable Exception error, int completed);
+
+        void onDone(int succeeded, int failed, long durationMs);
+    }
+
+    static final class Options {
+        final File outputDir;
+        final String prefix;
+        final int quality;
+        final int maxEdge;
+        final long memoryBudget;
+        // Renders full resolution images in bands of this many rows, 0 renders them whole
+        final int bandHeight;
+        // EXIF tags carried over from each input, null writes none
+        @Nullable final ExifAllowList metadata;
+
+        Options(@NonNull File outputDir, @NonNull String prefix, int quality, int maxEdge, long memoryBudget, int bandHeight,
+                @Nullable ExifAllowList metadata) {
+            this.outputDir = outputDir;
+            this.prefix = prefix;
+            this.quality = quality;
+            this.maxEdge = maxEdge;
+            this.memoryBudget = memoryBudget;
+            this.bandHeight = bandHeight;
+            this.metadata = metadata;
+        }
+
+        boolean tiled() {
+            return bandHeight > 0 && maxEdge == 0;
+        }
+    }
+
+    private final RecipeRenderer renderer;
+    private final RenderCache cache;
+
+    BatchRenderer(@NonNull RecipeRenderer renderer, @NonNull RenderCache cache) {
+        this.renderer = renderer;
+        this.cache = cache;
+    }
+
+    static int workerCount(long bytesPerImage, long memoryBudget, int cores) {
+        if (bytesPerImage <= 0) {
+            return cores;
+        }
+        return (int) Math.max(1, Math.min(cores, memoryBudget / bytesPerImage));
+    }
+
+    void start(@NonNull final List<String> inputs, @NonNull final EditRecipe recipe, @NonNull final Options options, @NonNull final Listener listener) {
+        final long start = SystemClock.elapsedRealtime();
+        if (inputs.isEmpty()) {
+            listener.onDone(0, 0, 0);
+            return;
+        }
+
+        long bytesPerImage = options.tiled()
+                ? renderer.estimateTiledBytes(inputs.get(0), options.bandHeight)
+                : renderer.estimateBytes(inputs.get(0), recipe, options.maxEdge);
+        int workers = workerCount(bytesPerImage, options.memoryBudget, Runtime.getRuntime().availableProcessors());
+        Log.d(TAG, "Rendering " + inputs.size() + " images on " + workers + " workers");
+
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final AtomicInteger remaining = new AtomicInteger(inputs.size());
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            final int index = i;
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    String input = inputs.get(index);
+                    File output = new File(options.outputDir, options.prefix + index + ".jpg");
+                    try {
+                        // The same recipe on the same pixels was rendered recently
+                        String key = RenderCache.key(renderer.open(input), recipe, options.maxEdge, options.quality, options.metadata);
+                        RecipeRenderer.Result result = cache.get(key);
+                        if (result == null) {
+                            byte[] metadata = options.metadata != null ? renderer.metadata(input, options.metadata) : null;
+                            result = options.tiled()
+                                    ? renderer.renderTiled(input, output, recipe, options.bandHeight, options.quality, metadata)
+                                    : renderer.render(input, output, recipe, options.maxEdge, options.quality, metadata);
+                            cache.put(key, result);
+                        }
+                        listener.onImage(index, input, result, null, completed.incrementAndGet());
+                    } catch (Exception | OutOfMemoryError e) {
+                        failed.incrementAndGet();
+                        listener.onImage(index, input, null, e instanceof Exception ? (Exception) e : new Exception(e), completed.incrementAndGet());
+                    }
+
+                    if (remaining.decrementAndGet() == 0) {
+                        pool.shutdown();
+                        listener.onDone(completed.get() - failed.get(), failed.get(), SystemClock.elapsedRealtime() - start);
+                    }
+                }
+            });
+        }
+    }
+}
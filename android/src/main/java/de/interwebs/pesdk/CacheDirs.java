@@ -0,0 +1,33 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+
+final class CacheDirs {
+
+    private CacheDirs() {}
+
+    // Cache dir for data derived from bundled resources, which may change with every app update
+    @NonNull
+    static File versioned(@NonNull Context context, @NonNull String name) {
+        String version;
+        try {
+            version = String.valueOf(context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode);
+        } catch (PackageManager.NameNotFoundException e) {
+            version = "0";
+        }
+        return new File(context.getCacheDir(), name + "/" + version);
+    }
+}
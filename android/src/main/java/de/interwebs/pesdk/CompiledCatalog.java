@@ -0,0 +1,392 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.interwebs.pesdk.catalog.Colors;
+import de.interwebs.pesdk.catalog.PaletteCache;
+import de.interwebs.pesdk.lut.LutLayout;
+import ly.img.android.sdk.decoder.ImageSource;
+import ly.img.android.sdk.filter.LutColorFilter;
+import ly.img.android.sdk.filter.NoneImageFilter;
+import ly.img.android.sdk.models.config.ColorConfig;
+import ly.img.android.sdk.models.config.CropAspectConfig;
+import ly.img.android.sdk.models.config.ImageStickerConfig;
+import ly.img.android.sdk.models.config.OverlayConfig;
+import ly.img.android.sdk.models.config.StickerCategoryConfig;
+import ly.img.android.sdk.models.config.interfaces.AspectConfigInterface;
+import ly.img.android.sdk.models.config.interfaces.ColorConfigInterface;
+import ly.img.android.sdk.models.config.interfaces.ImageFilterInterface;
+import ly.img.android.sdk.models.config.interfaces.StickerConfigInterface;
+import ly.img.android.sdk.models.config.interfaces.StickerListConfigInterface;
+import ly.img.android.sdk.models.constant.BlendMode;
+import ly.img.android.sdk.models.state.PESDKConfig;
+
+/**
+ * Immutable result of resolving a `custom` map into PESDK config objects.
+ *
+ * A catalog is compiled once (either inline per open or up front via registerCatalog)
+ * and can then be applied to any number of editor sessions.
+ */
+final class CompiledCatalog {
+
+    // Brand palettes are large and the same on every open
+    private static final PaletteCache<List<ColorConfigInterface>> PALETTES = new PaletteCache<>(32, new PaletteCache.Factory<List<ColorConfigInterface>>() {
+        @Override
+        public List<ColorConfigInterface> create(int[] argb) {
+            List<ColorConfigInterface> colors = new ArrayList<>(argb.length);
+            for (int color : argb) {
+                colors.add(new ColorConfig(R.string.pesdk_react_default_color_name, color));
+            }
+            return Collections.unmodifiableList(colors);
+        }
+    });
+
+    final boolean includeDefaultFilters;
+    final boolean includeDefaultOverlays;
+    final boolean includeDefaultStickerCategories;
+    final boolean includeDefaultBrushColors;
+    final boolean includeDefaultStickerColors;
+    final boolean includeDefaultTransforms;
+
+    // null means the section is left untouched
+    @Nullable final List<ImageFilterInterface> filters;
+    @Nullable final List<OverlayConfig> overlays;
+    @Nullable final List<StickerListConfigInterface> stickerCategories;
+    @Nullable final List<ColorConfigInterface> brushColors;
+    @Nullable final List<ColorConfigInterface> stickerColors;
+    @Nullable final List<AspectConfigInterface> transforms;
+
+    // Custom filter ids and resource ids of the menu thumbnails, used for preloading
+    final String[] filterIds;
+    final int[] stickerThumbnails;
+    final int[] overlayThumbnails;
+
+    // Time it took to compile this catalog, i.e. what every reuse saves
+    final long compileTimeMs;
+
+    private CompiledCatalog(Builder builder, long compileTimeMs) {
+        this.includeDefaultFilters = builder.includeDefaultFilters;
+        this.includeDefaultOverlays = builder.includeDefaultOverlays;
+        this.includeDefaultStickerCategories = builder.includeDefaultStickerCategories;
+        this.includeDefaultBrushColors = builder.includeDefaultBrushColors;
+        this.includeDefaultStickerColors = builder.includeDefaultStickerColors;
+        this.includeDefaultTransforms = builder.includeDefaultTransforms;
+        this.filters = freeze(builder.filters);
+        this.overlays = freeze(builder.overlays);
+        this.stickerCategories = freeze(builder.stickerCategories);
+        this.brushColors = freeze(builder.brushColors);
+        this.stickerColors = freeze(builder.stickerColors);
+        this.transforms = freeze(builder.transforms);
+        this.filterIds = builder.filterIds.toArray(new String[builder.filterIds.size()]);
+        this.stickerThumbnails = toArray(builder.stickerThumbnails);
+        this.overlayThumbnails = toArray(builder.overlayThumbnails);
+        this.compileTimeMs = compileTimeMs;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    // Color configs of a palette, interned across catalogs. Empty if the key is missing.
+    @NonNull
+    private static List<ColorConfigInterface> palette(ReadableMap custom, String key) {
+        if (!custom.hasKey(key)) {
+            return Collections.emptyList();
+        }
+
+        ReadableArray colors = custom.getArray(key);
+        int[] argb = new int[colors.size()];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = Colors.parse(colors.getString(i));
+        }
+        return PALETTES.intern(argb);
+    }
+
+    private static <T> List<T> freeze(@Nullable List<T> list) {
+        return list == null ? null : Collections.unmodifiableList(list);
+    }
+
+    // Merge the compiled sections into the (default) lists of the given config
+    void applyTo(PESDKConfig config) {
+        if (filters != null) {
+            ArrayList<ImageFilterInterface> list = new ArrayList<ImageFilterInterface>();
+            if (includeDefaultFilters) {
+                list = config.getFilterConfig();
+            } else {
+                list.add(new NoneImageFilter());
+            }
+            list.addAll(filters);
+            config.setFilters(list);
+        }
+
+        if (overlays != null) {
+            ArrayList<OverlayConfig> list = new ArrayList<OverlayConfig>();
+            // Overlays historically follow the filter default flag
+            if (includeDefaultFilters) {
+                list = config.getOverlays();
+            } else {
+                list.add(OverlayConfig.NON_BACKDROP);
+            }
+            list.addAll(overlays);
+            config.setOverlays(list);
+        }
+
+        if (stickerCategories != null) {
+            ArrayList<StickerListConfigInterface> list = new ArrayList<StickerListConfigInterface>();
+            if (includeDefaultStickerCategories) {
+                list = config.getStickerConfig();
+            }
+            list.addAll(stickerCategories);
+            config.setStickerLists(list);
+        }
+
+        if (brushColors != null) {
+            ArrayList<ColorConfigInterface> list = new ArrayList<ColorConfigInterface>();
+            if (includeDefaultBrushColors) {
+                list = config.getBrushColors();
+            }
+            list.addAll(brushColors);
+            config.setBrushColors(list);
+        }
+
+        if (stickerColors != null) {
+            ArrayList<ColorConfigInterface> list = new ArrayList<ColorConfigInterface>();
+            if (includeDefaultStickerColors) {
+                list = config.getStickerColorConfig();
+            }
+            list.addAll(stickerColors);
+            config.setStickerColors(list);
+        }
+
+        if (transforms != null) {
+            ArrayList<AspectConfigInterface> list = new ArrayList<AspectConfigInterface>();
+            if (includeDefaultTransforms) {
+                list = config.getAspects();
+            } else {
+                list.add(CropAspectConfig.FREE_CROP);
+            }
+            list.addAll(transforms);
+            config.setAspects(list);
+        }
+    }
+
+    // Catalog compiler
+    static CompiledCatalog compile(@NonNull AssetRegistry assets, @NonNull ThumbnailCache thumbnails, @NonNull ReadableMap custom) {
+        long start = SystemClock.elapsedRealtime();
+        Builder builder = new Builder();
+
+        builder.includeDefaultFilters = custom.hasKey("includeDefaultFilters") ? custom.getBoolean("includeDefaultFilters") : true;
+        builder.includeDefaultOverlays = custom.hasKey("includeDefaultOverlays") ? custom.getBoolean("includeDefaultOverlays") : true;
+        builder.includeDefaultStickerCategories = custom.hasKey("includeDefaultStickerCategories") ? custom.getBoolean("includeDefaultStickerCategories") : true;
+        builder.includeDefaultBrushColors = custom.hasKey("includeDefaultBrushColors") ? custom.getBoolean("includeDefaultBrushColors") : true;
+        builder.includeDefaultStickerColors = custom.hasKey("includeDefaultStickerColors") ? custom.getBoolean("includeDefaultStickerColors") : true;
+        builder.includeDefaultTransforms = custom.hasKey("includeDefaultTransforms") ? custom.getBoolean("includeDefaultTransforms") : true;
+
+        /* Set custom Filters */
+        if (custom.hasKey("filters") || !builder.includeDefaultFilters) {
+            builder.filters = new ArrayList<ImageFilterInterface>();
+
+            if (custom.hasKey("filters")) {
+                ReadableArray filtersConfig = custom.getArray("filters");
+                for (int i = 0; i < filtersConfig.size(); i++) {
+                    ReadableMap filter = filtersConfig.getMap(i);
+                    String filter_id = filter.getString("id");
+
+                    LutLayout layout = assets.lutLayout(filter_id);
+                    builder.filterIds.add(filter_id);
+
+                    builder.filters.add(new LutColorFilter(filter_id, assets.string(filter_id), R.drawable.imgly_filter_preview_photo, ImageSource.create(assets.drawable(filter_id)), layout.vTiles, layout.hTiles, layout.textureSize));
+                }
+            }
+        }
+
+        /* Set custom Overlays */
+        if (custom.hasKey("overlays") || !builder.includeDefaultOverlays) {
+            builder.overlays = new ArrayList<OverlayConfig>();
+
+            if (custom.hasKey("overlays")) {
+                ReadableArray overlaysConfig = custom.getArray("overlays");
+                for (int i = 0; i < overlaysConfig.size(); i++) {
+                    ReadableMap overlay = overlaysConfig.getMap(i);
+                    String overlay_id = overlay.getString("id");
+                    String overlay_label = overlay.getString("label");
+
+                    int thumbnail = assets.drawable(overlay_id + "_thumb");
+                    builder.overlayThumbnails.add(thumbnail);
+
+                    builder.overlays.add(
+                        new OverlayConfig(
+                            overlay_id,
+                            overlay_label,
+                            thumbnails.source(thumbnail),
+                            ImageSource.create(assets.drawable(overlay_id)),
+                            blendMode(overlay.getString("blendMode")),
+                            1f
+                        )
+                    );
+                }
+            }
+        }
+
+        /* Set custom Stickers */
+        if (custom.hasKey("stickerCategories") || !builder.includeDefaultStickerCategories) {
+            builder.stickerCategories = new ArrayList<StickerListConfigInterface>();
+
+            if (custom.hasKey("stickerCategories")) {
+                ReadableArray stickerCatsConfig = custom.getArray("stickerCategories");
+                for (int i = 0; i < stickerCatsConfig.size(); i++) {
+                    ReadableMap stickerCat = stickerCatsConfig.getMap(i);
+                    String stickerCat_id = stickerCat.getString("id");
+                    String stickerCat_label = stickerCat.getString("label");
+
+                    /* Set Stickers */
+                    ReadableArray stickersArray = stickerCat.getArray("stickers");
+                    ArrayList<StickerConfigInterface> stickers = new ArrayList<StickerConfigInterface>();
+
+                    for (int j = 0; j < stickersArray.size(); j++) {
+                        ReadableMap sticker = stickersArray.getMap(j);
+                        String sticker_id = sticker.getString("id");
+
+                        String sticker_tint = "none";
+                        if (sticker.hasKey("tintMode"))
+                            sticker_tint = sticker.getString("tintMode").toLowerCase();
+
+                        String sticker_label = sticker_id;
+                        if (sticker.hasKey("label"))
+                            sticker_label = sticker.getString("label");
+
+                        ImageStickerConfig.OPTION_MODE tintMode;
+                        switch (sticker_tint) {
+                            case "colorized":
+                                tintMode = ImageStickerConfig.OPTION_MODE.INK_STICKER;
+                                break;
+                            case "none":
+                            default:
+                                tintMode = ImageStickerConfig.OPTION_MODE.NON_OPTIONS;
+                        }
+
+                        int thumbnail = assets.drawable(sticker_id + "_thumb");
+                        builder.stickerThumbnails.add(thumbnail);
+
+                        stickers.add(
+                            new ImageStickerConfig(
+                                sticker_id,
+                                sticker_label,
+                                thumbnails.source(thumbnail),
+                                ImageSource.create(assets.drawable(sticker_id)),
+                                tintMode
+                            )
+                        );
+                    }
+
+                    int icon = assets.drawable(stickerCat_id);
+                    builder.stickerThumbnails.add(icon);
+
+                    builder.stickerCategories.add(
+                        new StickerCategoryConfig(
+                            stickerCat_label,
+                            thumbnails.source(icon),
+                            stickers
+                        )
+                    );
+                }
+            }
+        }
+
+        /* Set custom Brush Colors */
+        if (custom.hasKey("brushColors") || !builder.includeDefaultBrushColors) {
+            builder.brushColors = palette(custom, "brushColors");
+        }
+
+        /* Set custom Sticker Colors */
+        if (custom.hasKey("stickerColors") || !builder.includeDefaultStickerColors) {
+            builder.stickerColors = palette(custom, "stickerColors");
+        }
+
+        /* Set custom Transforms */
+        if (custom.hasKey("transforms") || !builder.includeDefaultTransforms) {
+            builder.transforms = new ArrayList<AspectConfigInterface>();
+
+            if (custom.hasKey("transforms")) {
+                ReadableArray transformsConfig = custom.getArray("transforms");
+                for (int i = 0; i < transformsConfig.size(); i++) {
+                    ReadableMap transform = transformsConfig.getMap(i);
+                    String transform_id = transform.getString("id");
+                    int transform_width = transform.getInt("width");
+                    int transform_height = transform.getInt("height");
+
+                    builder.transforms.add(new CropAspectConfig(assets.string(transform_id), transform_width, transform_height));
+                }
+            }
+        }
+
+        return new CompiledCatalog(builder, SystemClock.elapsedRealtime() - start);
+    }
+
+    static BlendMode blendMode(String name) {
+        switch (name.toLowerCase()) {
+            case "color_burn":
+                return BlendMode.COLOR_BURN;
+            case "darken":
+                return BlendMode.DARKEN;
+            case "lighten":
+                return BlendMode.LIGHTEN;
+            case "hard_light":
+                return BlendMode.HARD_LIGHT;
+            case "soft_light":
+                return BlendMode.SOFT_LIGHT;
+            case "multiply":
+                return BlendMode.MULTIPLY;
+            case "overlay":
+                return BlendMode.OVERLAY;
+            case "screen":
+                return BlendMode.SCREEN;
+            case "normal":
+            default:
+                return BlendMode.NORMAL;
+        }
+    }
+
+
+    private static final class Builder {
+        boolean includeDefaultFilters = true;
+        boolean includeDefaultOverlays = true;
+        boolean includeDefaultStickerCategories = true;
+        boolean includeDefaultBrushColors = true;
+        boolean includeDefaultStickerColors = true;
+        boolean includeDefaultTransforms = true;
+
+        List<ImageFilterInterface> filters;
+        List<OverlayConfig> overlays;
+        List<StickerListConfigInterface> stickerCategories;
+        List<ColorConfigInterface> brushColors;
+        List<ColorConfigInterface> stickerColors;
+        List<AspectConfigInterface> transforms;
+
+        final List<String> filterIds = new ArrayList<>();
+        final List<Integer> stickerThumbnails = new ArrayList<>();
+        final List<Integer> overlayThumbnails = new ArrayList<>();
+    }
+}
@@ -3,9 +3,9 @@ package nl.onstuimig.perfectphoto;
 
 import android.os.Parcel;
 
-import com.google.android.gms.analytics.GoogleAnalytics;
-import com.google.android.gms.analytics.HitBuilders;
-import com.google.android.gms.analytics.Tracker;
+import de.interwebs.pesdk.analytics.AnalyticsEvent;
+import de.interwebs.pesdk.analytics.AnalyticsPipeline;
+import de.interwebs.pesdk.analytics.EditAggregator;
 
 import java.util.List;
 
@@ -16,6 +16,7 @@ import ly.img.sdk.android.annotations.StateEvents;
 import ly.img.android.PESDKEvents;
 import ly.img.android.sdk.models.state.ColorAdjustmentSettings;
 import ly.img.android.sdk.models.state.EditorMenuState;
+import ly.img.android.sdk.models.state.EditorSaveState;
 import ly.img.android.sdk.models.state.FilterSettings;
 import ly.img.android.sdk.models.state.FocusSettings;
 import ly.img.android.sdk.models.state.LayerListSettings;
@@ -23,6 +24,14 @@ import ly.img.android.sdk.models.state.TransformSettings;
 import ly.img.android.sdk.models.state.layer.BrushLayerSettings;
 import ly.img.android.sdk.models.state.layer.StickerLayerSettings;
 import ly.img.android.sdk.models.state.manager.EventTracker;
+import ly.img.android.sdk.tools.AbstractEditorTool;
+import ly.img.android.sdk.tools.BrushEditorTool;
+import ly.img.android.sdk.tools.ColorAdjustmentTool;
+import ly.img.android.sdk.tools.FocusEditorTool;
+import ly.img.android.sdk.tools.OverlayEditorTool;
+import ly.img.android.sdk.tools.StickerEditorTool;
+import ly.img.android.sdk.tools.TextEditorTool;
+import ly.img.android.sdk.tools.TransformEditorTool;
 import ly.img.sdk.android.annotations.OnEvent;
 
 
@@ -44,188 +53,266 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableMap;
 
+import de.interwebs.pesdk.EditSummary;
+import de.interwebs.pesdk.EditorEventBridge;
+import de.interwebs.pesdk.metrics.Metrics;
+
 import static java.lang.Math.max;
 
 @StateEvents
 public class CustomEventTracker extends EventTracker {
-    //private Tracker googleAnalyticsTracker;
     private ReactInstanceManager reactInstanceManager;
     private ReactApplicationContext ctx;
-    private Tracker googleAnalyticsTracker;
+    // Sends in the background, shared by every parcelled copy
+    private AnalyticsPipeline pipeline;
+    // Null without a session token
+    private EditAggregator aggregator;
+    // Edit state for the result, null without a session token
+    private EditSummary summary;
     private String trackerId;
+    private String sessionToken;
 
 
     public CustomEventTracker(String trackerId) {
+        this(trackerId, null);
+    }
+
+    public CustomEventTracker(String trackerId, @Nullable String sessionToken) {
+        this.sessionToken = sessionToken;
         init(trackerId);
     }
 
     private void init(String trackerId) {
         this.trackerId = trackerId;
-        GoogleAnalytics analytics = GoogleAnalytics.getInstance(PESDK.getAppContext());
-        googleAnalyticsTracker = analytics.newTracker(trackerId);
+        pipeline = AnalyticsPipeline.get(PESDK.getAppContext(), trackerId);
+        aggregator = sessionToken != null ? EditAggregator.forSession(sessionToken) : null;
+        summary = sessionToken != null ? EditSummary.forSession(sessionToken) : null;
+    }
 
+    @Nullable
+    public String getSessionToken() {
+        return sessionToken;
     }
 
     @OnEvent(PESDKEvents.EditorMenuState_TOOL_STACK_CHANGED)
     protected void changeToolView(EditorMenuState menuState) {
-        googleAnalyticsTracker.setScreenName(menuState.getCurrentTool().getName());
-        googleAnalyticsTracker.send(new HitBuilders.ScreenViewBuilder().build());
+        pipeline.track(AnalyticsEvent.screenView(menuState.getCurrentTool().getName()));
+
+        // Only filter edits are replayed onto the full resolution source
+        AbstractEditorTool tool = menuState.getCurrentTool();
+        if (summary != null && (tool instanceof TransformEditorTool || tool instanceof FocusEditorTool || tool instanceof ColorAdjustmentTool
+                || tool instanceof TextEditorTool || tool instanceof StickerEditorTool || tool instanceof OverlayEditorTool || tool instanceof BrushEditorTool)) {
+            summary.otherTool();
+        }
+
+        EditorEventBridge bridge = EditorEventBridge.get();
+        if (bridge != null) {
+            WritableMap data = eventData();
+            data.putString("tool", menuState.getCurrentTool().getName());
+            bridge.post("tool", data);
+        }
     }
 
-    /*
-    @OnEvent(value = PESDKEvents.EditorMenuState_CANCEL_AND_LEAVE, ignoreReverts = true)
-    protected void onLeaveToolWithCancel(EditorMenuState menuState) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("menu action")
-          .setLabel(menuState.getCurrentTool().getName())
-          .setAction("cancel");
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(PESDKEvents.EditorSaveState_EXPORT_START)
+    protected void onExportStart(EditorSaveState saveState) {
+        Metrics.shared().exportStarted(sessionToken);
     }
 
+    // Live editor state for JS, see EditorEventBridge
 
-    @OnEvent(value = PESDKEvents.EditorMenuState_ACCEPT_AND_LEAVE, ignoreReverts = true)
-    protected void onLeaveToolWithAccept(EditorMenuState menuState) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("menu action")
-          .setLabel(menuState.getCurrentTool().getName())
-          .setAction("accept");
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.FilterSettings_FILTER, ignoreReverts = true)
+    protected void onFilterSelected(FilterSettings filterSettings) {
+        postFilter(filterSettings);
     }
 
+    private void postFilter(FilterSettings filterSettings) {
+        if (summary != null) {
+            summary.filter(filterSettings.getFilter().getId(), filterSettings.getIntensity());
+        }
 
-    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_CONTRAST, ignoreReverts = true, triggerDelay = 1000)
-    protected void onColorAdjustmentChangeContrast(ColorAdjustmentSettings colorAdjustmentSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change color adjustment")
-          .setLabel("contrast")
-          .setAction("changed")
-          .setValue(Math.round(colorAdjustmentSettings.getContrast() * 100));
+        EditorEventBridge bridge = EditorEventBridge.get();
+        if (bridge != null) {
+            WritableMap data = eventData();
+            data.putString("filter", filterSettings.getFilter().getId());
+            data.putDouble("intensity", filterSettings.getIntensity());
+            bridge.post("filter", data);
+        }
+    }
 
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.LayerListSettings_ADD_LAYER, ignoreReverts = true)
+    protected void onLayerAdded(LayerListSettings settings) {
+        postLayers(settings, "add");
     }
 
+    @OnEvent(value = PESDKEvents.LayerListSettings_REMOVE_LAYER, ignoreReverts = true)
+    protected void onLayerRemoved(LayerListSettings settings) {
+        postLayers(settings, "remove");
+    }
 
-    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_BRIGHTNESS, ignoreReverts = true, triggerDelay = 1000)
-    protected void onColorAdjustmentChangeBrightness(ColorAdjustmentSettings colorAdjustmentSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change color adjustment")
-          .setLabel("brightness")
-          .setAction("changed")
-          .setValue(Math.round(colorAdjustmentSettings.getBrightness() * 100));
-        googleAnalyticsTracker.send(builder.build());
+    private void postLayers(LayerListSettings settings, String action) {
+        if (summary != null) {
+            int stickers = 0;
+            int texts = 0;
+            for (LayerListSettings.LayerSettings layer : settings.getLayerSettingsList()) {
+                if (layer instanceof StickerLayerSettings) {
+                    if (((StickerLayerSettings) layer).getStickerConfig().getType() == StickerConfigInterface.STICKER_TYPE.TEXT) {
+                        texts++;
+                    } else {
+                        stickers++;
+                    }
+                }
+            }
+            summary.layers(settings.getLayerSettingsList().size(), stickers, texts);
+        }
+
+        EditorEventBridge bridge = EditorEventBridge.get();
+        if (bridge != null) {
+            List<LayerListSettings.LayerSettings> list = settings.getLayerSettingsList();
+            WritableMap data = eventData();
+            data.putString("action", action);
+            data.putInt("count", list.size());
+            LayerListSettings.LayerSettings lastLayer = list.isEmpty() ? null : list.get(list.size() - 1);
+            if ("add".equals(action) && lastLayer instanceof StickerLayerSettings) {
+                StickerConfigInterface stickerConfig = ((StickerLayerSettings) lastLayer).getStickerConfig();
+                data.putString("type", stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text" : "sticker");
+                data.putString("sticker", stickerConfig.getId());
+            }
+            bridge.post("layers", data);
+        }
     }
 
+    @OnEvent(value = PESDKEvents.TransformSettings_ASPECT, ignoreReverts = true)
+    protected void onCropAspect(TransformSettings transformSettings) {
+        if (summary != null) {
+            summary.cropAspect(transformSettings.getAspectConfig().getName());
+        }
+    }
 
-    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_SATURATION, ignoreReverts = true, triggerDelay = 1000)
-    protected void onColorAdjustmentChangeSaturation(ColorAdjustmentSettings colorAdjustmentSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change color adjustment")
-          .setLabel("saturation")
-          .setAction("changed")
-          .setValue(Math.round(colorAdjustmentSettings.getSaturation() * 100));
-        googleAnalyticsTracker.send(builder.build());
-        Trace.out("Test", "Saturation", Math.round(colorAdjustmentSettings.getSaturation() * 100));
+    private WritableMap eventData() {
+        WritableMap data = Arguments.createMap();
+        data.putString("sessionToken", sessionToken);
+        return data;
     }
 
+    // Slider values are aggregated per session, see EditAggregator
 
+    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_CONTRAST, ignoreReverts = true, triggerDelay = 1000)
+    protected void onColorAdjustmentChangeContrast(ColorAdjustmentSettings colorAdjustmentSettings) {
+        record(EditAggregator.CONTRAST, colorAdjustmentSettings.getContrast());
+    }
 
-    @OnEvent(value = PESDKEvents.BrushLayerSettings_COLOR, ignoreReverts = true, triggerDelay = 1000)
-    protected void onBrushColorChange(BrushLayerSettings brushLayerSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change brush")
-          .setLabel("color")
-          .setAction("changed")
-          .setValue(brushLayerSettings.getBrushColor());
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_BRIGHTNESS, ignoreReverts = true, triggerDelay = 1000)
+    protected void onColorAdjustmentChangeBrightness(ColorAdjustmentSettings colorAdjustmentSettings) {
+        record(EditAggregator.BRIGHTNESS, colorAdjustmentSettings.getBrightness());
     }
 
+    @OnEvent(value = PESDKEvents.ColorAdjustmentSettings_SATURATION, ignoreReverts = true, triggerDelay = 1000)
+    protected void onColorAdjustmentChangeSaturation(ColorAdjustmentSettings colorAdjustmentSettings) {
+        record(EditAggregator.SATURATION, colorAdjustmentSettings.getSaturation());
+    }
 
     @OnEvent(value = PESDKEvents.BrushLayerSettings_HARDNESS, ignoreReverts = true, triggerDelay = 1000)
     protected void onBrushHardnessChange(BrushLayerSettings brushLayerSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change brush")
-          .setLabel("hardness")
-          .setAction("changed")
-          .setValue(Math.round(brushLayerSettings.getBrushHardness() * 100));
-        googleAnalyticsTracker.send(builder.build());
+        record(EditAggregator.BRUSH_HARDNESS, brushLayerSettings.getBrushHardness());
     }
 
-
     @OnEvent(value = PESDKEvents.BrushLayerSettings_SIZE, ignoreReverts = true, triggerDelay = 1000)
     protected void onBrushSizeChange(BrushLayerSettings brushLayerSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("change brush")
-          .setLabel("size")
-          .setAction("changed")
-          .setValue(Math.round(brushLayerSettings.getBrushSize()));
-        googleAnalyticsTracker.send(builder.build());
+        record(EditAggregator.BRUSH_SIZE, brushLayerSettings.getBrushSize());
     }
 
+    @OnEvent(value = PESDKEvents.FilterSettings_INTENSITY, ignoreReverts = true, triggerDelay = 1000)
+    protected void onFilterIntensityChanged(FilterSettings filterSettings) {
+        record(EditAggregator.FILTER_INTENSITY, filterSettings.getIntensity());
+        postFilter(filterSettings);
+    }
 
-    @OnEvent(value = PESDKEvents.TransformSettings_ASPECT, ignoreReverts = true, triggerDelay = 1000)
-    protected void onCropAspectChanged(TransformSettings cropSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("crop changed")
-          .setLabel("aspect")
-          .setAction("changed aspect to: "+cropSettings.getAspectConfig().getName());
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.FocusSettings_INTENSITY, ignoreReverts = true, triggerDelay = 1000)
+    protected void onFocusIntensityChanged(FocusSettings focusSettings) {
+        record(EditAggregator.FOCUS_INTENSITY, focusSettings.getFocusIntensity());
     }
 
+    private void record(int metric, float value) {
+        if (aggregator != null) {
+            aggregator.record(metric, value);
+        }
+    }
 
-    @OnEvent(value = PESDKEvents.FilterSettings_FILTER, ignoreReverts = true, triggerDelay = 1000)
-    protected void onFilterChanged(FilterSettings filterSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("filter changed")
-          .setLabel("filter: " + filterSettings.getFilter().getName())
-          .setAction("set fitler");
-        googleAnalyticsTracker.send(builder.build());
+    /*
+    @OnEvent(value = PESDKEvents.EditorMenuState_CANCEL_AND_LEAVE, ignoreReverts = true)
+    protected void onLeaveToolWithCancel(EditorMenuState menuState) {
+        pipeline.track(AnalyticsEvent.event(
+          "menu action",
+          "cancel",
+          menuState.getCurrentTool().getName(),
+          0));
     }
 
 
-    @OnEvent(value = PESDKEvents.FilterSettings_INTENSITY, ignoreReverts = true, triggerDelay = 1000)
-    protected void onFilterIntensityChanged(FilterSettings filterSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("filter changed")
-          .setLabel("filter: " + filterSettings.getFilter().getName())
-          .setAction("changed intensity to: " + filterSettings.getIntensity());
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.EditorMenuState_ACCEPT_AND_LEAVE, ignoreReverts = true)
+    protected void onLeaveToolWithAccept(EditorMenuState menuState) {
+        pipeline.track(AnalyticsEvent.event(
+          "menu action",
+          "accept",
+          menuState.getCurrentTool().getName(),
+          0));
     }
 
 
-    @OnEvent(value = PESDKEvents.FocusSettings_MODE, ignoreReverts = true, triggerDelay = 1000)
-    protected void onFocusTypeChanged(FocusSettings focusSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("focus changed")
-          .setLabel("focus: " + focusSettings.getFocusMode())
-          .setAction("set type");
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.BrushLayerSettings_COLOR, ignoreReverts = true, triggerDelay = 1000)
+    protected void onBrushColorChange(BrushLayerSettings brushLayerSettings) {
+        pipeline.track(AnalyticsEvent.event(
+          "change brush",
+          "changed",
+          "color",
+          brushLayerSettings.getBrushColor()));
     }
 
 
-    @OnEvent(value = PESDKEvents.FocusSettings_INTENSITY, ignoreReverts = true, triggerDelay = 1000)
-    protected void onFocusIntensityChanged(FocusSettings focusSettings) {
-        HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-          .setCategory("focus changed")
-          .setLabel("focus: " + focusSettings.getFocusMode())
-          .setAction("set intensity")
-          .setValue(Math.round(focusSettings.getFocusIntensity() * 100));
+    @OnEvent(value = PESDKEvents.TransformSettings_ASPECT, ignoreReverts = true, triggerDelay = 1000)
+    protected void onCropAspectChanged(TransformSettings cropSettings) {
+        pipeline.track(AnalyticsEvent.event(
+          "crop changed",
+          "changed aspect to: "+cropSettings.getAspectConfig().getName(),
+          "aspect",
+          0));
+    }
+
 
-        googleAnalyticsTracker.send(builder.build());
+    @OnEvent(value = PESDKEvents.FilterSettings_FILTER, ignoreReverts = true, triggerDelay = 1000)
+    protected void onFilterChanged(FilterSettings filterSettings) {
+        pipeline.track(AnalyticsEvent.event(
+          "filter changed",
+          "set fitler",
+          "filter: " + filterSettings.getFilter().getName(),
+          0));
     }
 
+
+    @OnEvent(value = PESDKEvents.FocusSettings_MODE, ignoreReverts = true, triggerDelay = 1000)
+    protected void onFocusTypeChanged(FocusSettings focusSettings) {
+        pipeline.track(AnalyticsEvent.event(
+          "focus changed",
+          "set type",
+          "focus: " + focusSettings.getFocusMode(),
+          0));
+    }
+
+
     @OnEvent(value = PESDKEvents.LayerListSettings_ADD_LAYER, ignoreReverts = true)
     protected void onStickerAdd(LayerListSettings settings) {
         List<LayerListSettings.LayerSettings> list = settings.getLayerSettingsList();
         LayerListSettings.LayerSettings lastLayer = list.get(list.size() - 1);
         if (lastLayer instanceof StickerLayerSettings) {
             StickerConfigInterface stickerConfig = ((StickerLayerSettings) lastLayer).getStickerConfig();
-            HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-              .setCategory(stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker")
-              .setLabel(stickerConfig.getName())
-              .setAction("add sticker");
-            googleAnalyticsTracker.send(builder.build());
+            pipeline.track(AnalyticsEvent.event(
+              stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker",
+              "add sticker",
+              stickerConfig.getName(),
+              0));
         }
     }
 
@@ -236,11 +323,11 @@ public class CustomEventTracker extends EventTracker {
         LayerListSettings.LayerSettings lastLayer = list.get(list.size() - 1);
         if (lastLayer instanceof StickerLayerSettings) {
             StickerConfigInterface stickerConfig = ((StickerLayerSettings) lastLayer).getStickerConfig();
-            HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-              .setCategory(stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker")
-              .setLabel(stickerConfig.getName())
-              .setAction("remove sticker");
-            googleAnalyticsTracker.send(builder.build());
+            pipeline.track(AnalyticsEvent.event(
+              stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker",
+              "remove sticker",
+              stickerConfig.getName(),
+              0));
         }
     }
 
@@ -250,11 +337,11 @@ public class CustomEventTracker extends EventTracker {
         LayerListSettings.LayerSettings lastLayer = settings.getSelected();
         if (lastLayer instanceof StickerLayerSettings) {
             StickerConfigInterface stickerConfig = ((StickerLayerSettings) lastLayer).getStickerConfig();
-            HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
-              .setCategory(stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker")
-              .setLabel(stickerConfig.getName())
-              .setAction("bring to front");
-            googleAnalyticsTracker.send(builder.build());
+            pipeline.track(AnalyticsEvent.event(
+              stickerConfig.getType() == StickerConfigInterface.STICKER_TYPE.TEXT ? "text": "sticker",
+              "bring to front",
+              stickerConfig.getName(),
+              0));
         }
     }
     */
@@ -269,11 +356,16 @@ public class CustomEventTracker extends EventTracker {
     public void writeToParcel(Parcel dest, int flags) {
         super.writeToParcel(dest, flags);
         dest.writeString(this.trackerId);
+        dest.writeString(this.sessionToken);
     }
 
     protected CustomEventTracker(Parcel in) {
         super(in);
-        init(in.readString());
+        String trackerId = in.readString();
+        this.sessionToken = in.readString();
+        init(trackerId);
+        // Restored from the Intent, the editor Activity is up
+        Metrics.shared().sessionShown(sessionToken);
     }
 
     public static final Creator<CustomEventTracker> CREATOR = new Creator<CustomEventTracker>() {
@@ -0,0 +1,102 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import ly.img.android.sdk.models.constant.BlendMode;
+
+/**
+ * Edits that can be rendered without the editor UI.
+ *
+ * Filters and overlays are referenced by the same ids as in the `custom` catalog:
+ *
+ *   {
+ *     filter: 'warm_8_8_64', filterIntensity: 1,
+ *     crop: { x: 0, y: 0, width: 1, height: 1 },   // relative to the upright, rotated image
+ *     rotation: 90,                                 // clockwise on top of the EXIF orientation, multiple of 90
+ *     overlay: 'paper', overlayBlendMode: 'multiply', overlayIntensity: 1
+ *   }
+ */
+final class EditRecipe {
+
+    @Nullable final String filterId;
+    final float filterIntensity;
+    @Nullable final RectF crop;
+    final int rotation;
+    @Nullable final String overlayId;
+    @NonNull final BlendMode overlayBlendMode;
+    final float overlayIntensity;
+
+    EditRecipe(@Nullable String filterId, float filterIntensity, @Nullable RectF crop, int rotation,
+               @Nullable String overlayId, @NonNull BlendMode overlayBlendMode, float overlayIntensity) {
+        this.filterId = filterId;
+        this.filterIntensity = filterIntensity;
+        this.crop = crop;
+        this.rotation = ((rotation % 360) + 360) % 360;
+        this.overlayId = overlayId;
+        this.overlayBlendMode = overlayBlendMode;
+        this.overlayIntensity = overlayIntensity;
+
+        if (this.rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation has to be a multiple of 90, got " + rotation);
+        }
+    }
+
+    static EditRecipe from(@NonNull ReadableMap recipe) {
+        RectF crop = null;
+        if (recipe.hasKey("crop") && !recipe.isNull("crop")) {
+            ReadableMap rect = recipe.getMap("crop");
+            float x = (float) rect.getDouble("x");
+            float y = (float) rect.getDouble("y");
+            crop = new RectF(x, y, x + (float) rect.getDouble("width"), y + (float) rect.getDouble("height"));
+            if (crop.left < 0 || crop.top < 0 || crop.right > 1 || crop.bottom > 1 || crop.isEmpty()) {
+                throw new IllegalArgumentException("Crop has to lie within 0..1");
+            }
+        }
+
+        return new EditRecipe(
+                string(recipe, "filter"),
+                recipe.hasKey("filterIntensity") ? (float) recipe.getDouble("filterIntensity") : 1f,
+                crop,
+                recipe.hasKey("rotation") ? recipe.getInt("rotation") : 0,
+                string(recipe, "overlay"),
+                CompiledCatalog.blendMode(recipe.hasKey("overlayBlendMode") ? recipe.getString("overlayBlendMode") : "normal"),
+                recipe.hasKey("overlayIntensity") ? (float) recipe.getDouble("overlayIntensity") : 1f
+        );
+    }
+
+    @Nullable
+    private static String string(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+    }
+
+    // Same for recipes that render the same, see RenderCache
+    @NonNull
+    String key() {
+        RectF c = crop != null ? crop : new RectF(0, 0, 1, 1);
+        return (filterId != null && filterIntensity > 0 ? filterId + ":" + filterIntensity : "null") + "|"
+                + c.left + "," + c.top + "," + c.right + "," + c.bottom + "|" + rotation + "|"
+                + (overlayId != null && overlayIntensity > 0 ? overlayId + ":" + overlayBlendMode + ":" + overlayIntensity : "null");
+    }
+
+    // Only crop and rotation, see RecipeRenderer.renderRegion
+    boolean transformOnly() {
+        return (filterId == null || filterIntensity <= 0) && (overlayId == null || overlayIntensity <= 0);
+    }
+
+    boolean hasTransform() {
+        return crop != null || rotation != 0;
+    }
+}
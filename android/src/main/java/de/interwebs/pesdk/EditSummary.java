@@ -0,0 +1,101 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The edit state of one editor session as far as the result needs it: filter, crop aspect and
+ * layers. The tracker keeps it up to date, the module takes it when the session ends.
+ */
+public final class EditSummary {
+
+    private static final ConcurrentMap<String, EditSummary> SESSIONS = new ConcurrentHashMap<>();
+
+    private String filterId;
+    private float filterIntensity;
+    private String cropAspect;
+    private int layers;
+    private int stickers;
+    private int texts;
+    // A tool was opened whose edits can't be replayed onto the source, see ProxyImage
+    private boolean otherTools;
+
+    EditSummary() {}
+
+    // Summary of the given editor session, shared by every parcelled tracker of the session
+    public static EditSummary forSession(String sessionToken) {
+        EditSummary summary = SESSIONS.get(sessionToken);
+        if (summary == null) {
+            EditSummary created = new EditSummary();
+            summary = SESSIONS.putIfAbsent(sessionToken, created);
+            if (summary == null) {
+                summary = created;
+            }
+        }
+        return summary;
+    }
+
+    // Ends the session, null if the tracker never reported anything
+    @Nullable
+    static EditSummary finish(String sessionToken) {
+        return sessionToken != null ? SESSIONS.remove(sessionToken) : null;
+    }
+
+    public synchronized void filter(String filterId, float intensity) {
+        this.filterId = filterId;
+        this.filterIntensity = intensity;
+    }
+
+    public synchronized void cropAspect(String cropAspect) {
+        this.cropAspect = cropAspect;
+    }
+
+    public synchronized void layers(int layers, int stickers, int texts) {
+        this.layers = layers;
+        this.stickers = stickers;
+        this.texts = texts;
+    }
+
+    public synchronized void otherTool() {
+        this.otherTools = true;
+    }
+
+    // Whether the filter is all that was edited
+    synchronized boolean onlyFilter() {
+        return !otherTools && layers == 0;
+    }
+
+    @Nullable
+    synchronized String filterId() {
+        return filterId;
+    }
+
+    synchronized float filterIntensity() {
+        return filterIntensity;
+    }
+
+    synchronized WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putString("filter", filterId);
+        map.putDouble("filterIntensity", filterId != null ? filterIntensity : 0);
+        map.putString("cropAspect", cropAspect);
+        map.putInt("layers", layers);
+        map.putInt("stickers", stickers);
+        map.putInt("texts", texts);
+        return map;
+    }
+}
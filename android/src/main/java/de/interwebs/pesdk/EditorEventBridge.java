@@ -0,0 +1,123 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Forwards editor state changes to JS.
+ *
+ * Changes are coalesced per key, only the latest one of each key is kept, and sent as one
+ * array at most maxPerSecond times a second. A slider burst ends up as a single entry.
+ */
+public final class EditorEventBridge {
+
+    public static final String EVENT = "PESDKEditorEvents";
+
+    private static final class Pending {
+        final WritableMap data;
+        final int coalesced;
+        final long time;
+
+        Pending(WritableMap data, int coalesced, long time) {
+            this.data = data;
+            this.coalesced = coalesced;
+            this.time = time;
+        }
+    }
+
+    // Set while JS listens, see PESDKModule.startEditorEvents
+    private static volatile EditorEventBridge instance;
+
+    private final ReactContext ctx;
+    private final long intervalMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private long lastFlush;
+    private boolean scheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private EditorEventBridge(ReactContext ctx, int maxPerSecond) {
+        this.ctx = ctx;
+        this.intervalMs = 1000 / Math.max(1, Math.min(60, maxPerSecond));
+    }
+
+    static void start(@NonNull ReactContext ctx, int maxPerSecond) {
+        stop();
+        instance = new EditorEventBridge(ctx, maxPerSecond);
+    }
+
+    static void stop() {
+        EditorEventBridge bridge = instance;
+        instance = null;
+        if (bridge != null) {
+            bridge.handler.removeCallbacks(bridge.flushTask);
+        }
+    }
+
+    // Null if nobody listens, callers should skip building the event then
+    @Nullable
+    public static EditorEventBridge get() {
+        return instance;
+    }
+
+    public void post(@NonNull String key, @NonNull WritableMap data) {
+        long now = SystemClock.uptimeMillis();
+        synchronized (pending) {
+            Pending previous = pending.remove(key);
+            pending.put(key, new Pending(data, previous != null ? previous.coalesced + 1 : 0, System.currentTimeMillis()));
+
+            if (!scheduled) {
+                scheduled = true;
+                handler.postAtTime(flushTask, Math.max(now, lastFlush + intervalMs));
+            }
+        }
+    }
+
+    private void flush() {
+        WritableArray events = Arguments.createArray();
+        synchronized (pending) {
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                WritableMap event = Arguments.createMap();
+                event.putString("key", entry.getKey());
+                event.putMap("data", entry.getValue().data);
+                event.putInt("coalesced", entry.getValue().coalesced);
+                event.putDouble("time", entry.getValue().time);
+                events.pushMap(event);
+            }
+            pending.clear();
+            scheduled = false;
+            lastFlush = SystemClock.uptimeMillis();
+        }
+
+        if (instance == this && ctx.hasActiveCatalystInstance()) {
+            ctx.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT, events);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Images edited one after another, the next editor is started as soon as the previous one
+ * returns. Only touched from the UI thread once started.
+ */
+final class EditorQueue {
+
+    final String id;
+    final List<String> paths;
+    @Nullable final ReadableArray features;
+    @Nullable final ReadableMap options;
+    @Nullable final CompiledCatalog catalog;
+    final ExportOptions export;
+    final Promise promise;
+
+    // Result path per image, null where the editor was cancelled or never opened
+    final List<String> results;
+    int index;
+
+    EditorQueue(@NonNull String id, @NonNull List<String> paths, @Nullable ReadableArray features, @Nullable ReadableMap options,
+                @Nullable CompiledCatalog catalog, @NonNull ExportOptions export, @NonNull Promise promise) {
+        this.id = id;
+        this.paths = paths;
+        this.features = features;
+        this.options = options;
+        this.catalog = catalog;
+        this.export = export;
+        this.promise = promise;
+        this.results = new ArrayList<>(Collections.<String>nCopies(paths.size(), null));
+    }
+
+    boolean hasNext() {
+        return index < paths.size();
+    }
+
+    @NonNull
+    String current() {
+        return paths.get(index);
+    }
+}
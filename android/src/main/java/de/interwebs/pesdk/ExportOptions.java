@@ -0,0 +1,221 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.os.Environment;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.interwebs.pesdk.exif.ExifAllowList;
+
+import ly.img.android.sdk.models.constant.Directory;
+import ly.img.android.sdk.models.state.EditorSaveSettings;
+
+/**
+ * Where and how the editor writes its result, from the export keys of the options map.
+ *
+ * `dcim` (the default) keeps the old behaviour: a public folder that is picked up by the media
+ * scanner. `cache` and `files` write into the app's private storage, which the media scanner
+ * never indexes, for results that are uploaded and deleted right away.
+ *
+ * With `exportAsync` the editor only stages its result in the cache, ExportPipeline moves it to
+ * the target afterwards.
+ *
+ * With `exportMetadata` the allowed EXIF tags of the source are written into the result, see
+ * ExifAllowList.
+ */
+final class ExportOptions {
+
+    static final String DCIM = "dcim";
+    static final String CACHE = "cache";
+    static final String FILES = "files";
+
+    static final String JPEG = "jpeg";
+
+    // What to return when the image is left unchanged, see unchanged
+    static final String SAVE_ALWAYS = "always";
+    static final String UNCHANGED_SOURCE = "source";
+    static final String UNCHANGED_LINK = "link";
+    static final String UNCHANGED_COPY = "copy";
+
+    static final String DEFAULT_FOLDER = "perfectphoto";
+    static final String DEFAULT_PREFIX = "perfectphoto_";
+
+    final String directory;
+    final String folder;
+    final String prefix;
+    final String format;
+    // 1..100, 0 leaves the SDK default
+    final int quality;
+    final boolean async;
+    // source, link or copy to skip writing unchanged images, null always writes a new file
+    @Nullable final String unchanged;
+    // Resolve with size, type, export time and edits instead of the bare path
+    final boolean richResult;
+    // Smaller copies of the result, null if there are none
+    @Nullable final ExportOutputs outputs;
+    // EXIF tags carried over from the source, null writes none
+    @Nullable final ExifAllowList metadata;
+
+    ExportOptions(@NonNull String directory, @NonNull String folder, @NonNull String prefix, @NonNull String format, int quality, boolean async,
+                  @Nullable String unchanged, boolean richResult, @Nullable ExportOutputs outputs, @Nullable ExifAllowList metadata) {
+        this.directory = directory;
+        this.folder = folder;
+        this.prefix = prefix;
+        this.format = format;
+        this.quality = quality;
+        this.async = async;
+        this.unchanged = unchanged;
+        this.richResult = richResult;
+        this.outputs = outputs;
+        this.metadata = metadata;
+    }
+
+    static ExportOptions defaults() {
+        return new ExportOptions(DCIM, DEFAULT_FOLDER, DEFAULT_PREFIX, JPEG, 0, false, null, false, null, null);
+    }
+
+    static ExportOptions from(@Nullable ReadableMap options) {
+        if (options == null) {
+            return defaults();
+        }
+
+        String directory = string(options, PESDKModule.exportDirectoryKey, DCIM).toLowerCase();
+        if (!DCIM.equals(directory) && !CACHE.equals(directory) && !FILES.equals(directory)) {
+            throw new IllegalArgumentException("Unknown export directory " + directory + ", use dcim, cache or files");
+        }
+
+        // PESDK v5 always encodes its result as JPEG
+        String format = string(options, PESDKModule.exportFormatKey, JPEG).toLowerCase();
+        if (!JPEG.equals(format) && !"jpg".equals(format)) {
+            throw new IllegalArgumentException("Unsupported export format " + format + ", only jpeg is supported on Android");
+        }
+
+        // Left out means the SDK default, which is 0 here
+        int quality = 0;
+        if (options.hasKey(PESDKModule.exportQualityKey)) {
+            quality = options.getInt(PESDKModule.exportQualityKey);
+            if (quality < 1 || quality > 100) {
+                throw new IllegalArgumentException("Export quality has to be within 1..100, got " + quality);
+            }
+        }
+
+        String savePolicy = string(options, PESDKModule.savePolicyKey, SAVE_ALWAYS).toLowerCase();
+        if (!SAVE_ALWAYS.equals(savePolicy) && !UNCHANGED_SOURCE.equals(savePolicy) && !UNCHANGED_LINK.equals(savePolicy) && !UNCHANGED_COPY.equals(savePolicy)) {
+            throw new IllegalArgumentException("Unknown save policy " + savePolicy + ", use always, source, link or copy");
+        }
+
+        return new ExportOptions(
+                directory,
+                name(options, PESDKModule.exportFolderKey, DEFAULT_FOLDER),
+                name(options, PESDKModule.exportPrefixKey, DEFAULT_PREFIX),
+                JPEG,
+                quality,
+                options.hasKey(PESDKModule.exportAsyncKey) && options.getBoolean(PESDKModule.exportAsyncKey),
+                SAVE_ALWAYS.equals(savePolicy) ? null : savePolicy,
+                options.hasKey(PESDKModule.richResultKey) && options.getBoolean(PESDKModule.richResultKey),
+                ExportOutputs.from(options),
+                allowList(options, PESDKModule.exportMetadataKey)
+        );
+    }
+
+    // true for the default tags, an array for these tags, null if false or missing
+    @Nullable
+    static ExifAllowList allowList(@Nullable ReadableMap options, @NonNull String key) {
+        if (options == null || !options.hasKey(key) || options.isNull(key)) {
+            return null;
+        }
+        switch (options.getType(key)) {
+            case Boolean:
+                return options.getBoolean(key) ? ExifAllowList.DEFAULT : null;
+            case Array:
+                ReadableArray array = options.getArray(key);
+                List<String> names = new ArrayList<>(array.size());
+                for (int i = 0; i < array.size(); i++) {
+                    names.add(array.getString(i));
+                }
+                return ExifAllowList.of(names);
+            default:
+                throw new IllegalArgumentException(key + " has to be true or an array of EXIF tag names");
+        }
+    }
+
+    private static String string(ReadableMap options, String key, String fallback) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getString(key) : fallback;
+    }
+
+    private static String name(ReadableMap options, String key, String fallback) {
+        return checkName(key, string(options, key, fallback));
+    }
+
+    // A single path segment, so the result can't end up outside the export directory
+    static String checkName(String what, String name) {
+        if (name.contains("/") || name.contains("\\") || name.contains("..")) {
+            throw new IllegalArgumentException(what + " can't contain path separators or .., got " + name);
+        }
+        return name;
+    }
+
+    boolean isPrivate() {
+        return !DCIM.equals(directory);
+    }
+
+    // Target folder of private exports
+    @NonNull
+    File privateDir(@NonNull Context context) {
+        File root = CACHE.equals(directory) ? context.getCacheDir() : context.getFilesDir();
+        return new File(root, folder);
+    }
+
+    // Where the export ends up, the editor writes here directly unless it's async
+    @NonNull
+    File targetDir(@NonNull Context context) {
+        if (isPrivate()) {
+            return privateDir(context);
+        }
+        return new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM), folder);
+    }
+
+    // Where the editor writes async exports to
+    @NonNull
+    static File stagingDir(@NonNull Context context) {
+        return new File(context.getCacheDir(), "pesdk-export");
+    }
+
+    void applyTo(@NonNull Context context, @NonNull EditorSaveSettings saveSettings) {
+        // Without changes the editor returns its source path instead of writing
+        saveSettings.setSavePolicy(unchanged != null
+                ? EditorSaveSettings.SavePolicy.RETURN_SOURCE_OR_CREATE_OUTPUT_IF_NECESSARY
+                : EditorSaveSettings.SavePolicy.RETURN_ALWAYS_ONLY_OUTPUT);
+        if (async) {
+            File dir = stagingDir(context);
+            dir.mkdirs();
+            saveSettings.setExportDir(dir.getAbsolutePath());
+        } else if (isPrivate()) {
+            File dir = privateDir(context);
+            dir.mkdirs();
+            saveSettings.setExportDir(dir.getAbsolutePath());
+        } else {
+            saveSettings.setExportDir(Directory.DCIM, folder);
+        }
+        saveSettings.setExportPrefix(prefix);
+        if (quality > 0) {
+            saveSettings.setJpegQuality(quality);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Several sizes of the editor's result from a single decode, e.g. full, 1080px and 256px.
+ *
+ * The result is decoded once at the largest size asked for, then every output is scaled down
+ * from the one before it, largest to smallest. Outputs are written to the export target as
+ * `<name>_<output>.jpg`.
+ */
+final class ExportOutputs {
+
+    private static final int DEFAULT_QUALITY = 90;
+
+    static final class Spec {
+        final String name;
+        // 0 keeps the full size
+        final int maxEdge;
+        // 0 keeps the editor's file as it is if maxEdge is 0 as well
+        final int quality;
+
+        Spec(@NonNull String name, int maxEdge, int quality) {
+            this.name = name;
+            this.maxEdge = maxEdge;
+            this.quality = quality;
+        }
+    }
+
+    static final class Output {
+        final String name;
+        final String path;
+        final int width;
+        final int height;
+
+        Output(String name, String path, int width, int height) {
+            this.name = name;
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // Largest first
+    final List<Spec> specs;
+
+    private ExportOutputs(@NonNull List<Spec> specs) {
+        this.specs = specs;
+    }
+
+    // Null if no outputs are asked for
+    @Nullable
+    static ExportOutputs from(@Nullable ReadableMap options) {
+        if (options == null || !options.hasKey(PESDKModule.outputsKey) || options.isNull(PESDKModule.outputsKey)) {
+            return null;
+        }
+
+        ReadableArray outputs = options.getArray(PESDKModule.outputsKey);
+        if (outputs.size() == 0) {
+            return null;
+        }
+
+        List<Spec> specs = new ArrayList<>(outputs.size());
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            ReadableMap output = outputs.getMap(i);
+            int maxEdge = output.hasKey("maxEdge") ? output.getInt("maxEdge") : 0;
+            if (maxEdge < 0) {
+                throw new IllegalArgumentException("Output maxEdge has to be positive, got " + maxEdge);
+            }
+            int quality = output.hasKey("quality") ? output.getInt("quality") : 0;
+            if (quality < 0 || quality > 100) {
+                throw new IllegalArgumentException("Output quality has to be within 1..100, got " + quality);
+            }
+            String name = output.hasKey("name") ? ExportOptions.checkName("Output name", output.getString("name")) : maxEdge > 0 ? String.valueOf(maxEdge) : "full";
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate output " + name);
+            }
+            specs.add(new Spec(name, maxEdge, quality));
+        }
+
+        Collections.sort(specs, new Comparator<Spec>() {
+            @Override
+            public int compare(Spec a, Spec b) {
+                return edge(b) < edge(a) ? -1 : edge(b) == edge(a) ? 0 : 1;
+            }
+        });
+        return new ExportOutputs(specs);
+    }
+
+    private static long edge(Spec spec) {
+        return spec.maxEdge > 0 ? spec.maxEdge : Long.MAX_VALUE;
+    }
+
+    // In the order of specs
+    @NonNull
+    List<Output> render(@NonNull RecipeRenderer renderer, @NonNull String input, @NonNull File dir) throws IOException {
+        File source = new File(RecipeRenderer.path(input));
+        String base = source.getName();
+        int dot = base.lastIndexOf('.');
+        if (dot > 0) {
+            base = base.substring(0, dot);
+        }
+
+        List<Output> outputs = new ArrayList<>(specs.size());
+        Bitmap bitmap = renderer.decode(input, specs.get(0).maxEdge);
+        try {
+            for (Spec spec : specs) {
+                bitmap = scaleDown(bitmap, spec.maxEdge);
+
+                // Encoding the full size again would only lose quality
+                if (spec.maxEdge == 0 && spec.quality == 0) {
+                    outputs.add(new Output(spec.name, source.getPath(), bitmap.getWidth(), bitmap.getHeight()));
+                    continue;
+                }
+
+                File file = new File(dir, base + "_" + spec.name + ".jpg");
+                renderer.encode(bitmap, file, spec.quality > 0 ? spec.quality : DEFAULT_QUALITY);
+                outputs.add(new Output(spec.name, file.getPath(), bitmap.getWidth(), bitmap.getHeight()));
+            }
+        } finally {
+            bitmap.recycle();
+        }
+        return outputs;
+    }
+
+    // Halves while that stays above maxEdge, a single bilinear step over a large ratio aliases
+    @NonNull
+    static Bitmap scaleDown(@NonNull Bitmap bitmap, int maxEdge) {
+        while (maxEdge > 0 && Math.max(bitmap.getWidth(), bitmap.getHeight()) > maxEdge) {
+            int edge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+            float scale = edge / 2 >= maxEdge ? 0.5f : (float) maxEdge / edge;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)),
+                    true);
+            if (scaled == bitmap) {
+                break;
+            }
+            bitmap.recycle();
+            bitmap = scaled;
+        }
+        return bitmap;
+    }
+}
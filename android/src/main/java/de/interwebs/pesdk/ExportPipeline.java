@@ -0,0 +1,292 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.interwebs.pesdk.exif.ExifOutputStream;
+
+/**
+ * Moves the image the editor staged in the cache to its export target on a thread of its own,
+ * so the editor's promise doesn't wait for the full-resolution file to reach its destination.
+ *
+ * If nothing needs the bytes the staged file is synced and renamed to the target. Otherwise, or
+ * if the target is on another filesystem, it's copied in chunks, each one is passed on to the
+ * ExportSink if there is one. The copy is written next to the target first and renamed after an
+ * fsync, so a target that exists is always complete. Exports run one after another and can be
+ * cancelled until they are committed, i.e. about to be renamed into place.
+ *
+ * EXIF metadata from the listener replaces the file's own as it is copied, see ExifOutputStream.
+ */
+public final class ExportPipeline {
+
+    private static final String TAG = "PESDK";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Progress is reported about every 5%
+    private static final int PROGRESS_STEPS = 20;
+
+    interface Listener {
+        // Called from the export thread before copying: APP1 segment to write into the file, null keeps the file's own
+        @Nullable
+        byte[] metadata(@NonNull String exportId);
+
+        // Called from the export thread
+        void onProgress(@NonNull String exportId, long written, long total);
+
+        void onReady(@NonNull String exportId, @NonNull File file);
+
+        // error is null if the export was cancelled
+        void onFailed(@NonNull String exportId, @Nullable Exception error);
+    }
+
+    private static final class Job {
+        final String id;
+        final File staged;
+        final File target;
+        final Listener listener;
+        // Both guarded by the job, once committed it can't be canceled anymore
+        boolean canceled;
+        boolean committed;
+
+        Job(String id, File staged, File target, Listener listener) {
+            this.id = id;
+            this.staged = staged;
+            this.target = target;
+            this.listener = listener;
+        }
+    }
+
+    private static volatile ExportSink sink;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "pesdk-export");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Queued and running exports by id
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Sink for the bytes of every export started from now on, null removes it.
+     */
+    public static void setSink(@Nullable ExportSink exportSink) {
+        sink = exportSink;
+    }
+
+    ExportPipeline() {}
+
+    void submit(@NonNull String exportId, @NonNull File staged, @NonNull File target, @NonNull Listener listener) {
+        final Job job = new Job(exportId, staged, target, listener);
+        jobs.put(exportId, job);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    export(job);
+                } finally {
+                    jobs.remove(job.id);
+                }
+            }
+        });
+    }
+
+    // False if the export is unknown, done or already being moved into place
+    boolean cancel(@NonNull String exportId) {
+        Job job = jobs.get(exportId);
+        if (job == null) {
+            return false;
+        }
+        synchronized (job) {
+            if (job.committed) {
+                return false;
+            }
+            job.canceled = true;
+            return true;
+        }
+    }
+
+    // Queued exports still finish, their files are wanted even if nobody listens anymore
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static void export(Job job) {
+        ExportSink exportSink = sink;
+        File partial = new File(job.target.getParentFile(), job.target.getName() + ".partial");
+        long total = job.staged.length();
+
+        try {
+            File dir = job.target.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+
+            byte[] metadata = job.listener.metadata(job.id);
+            if (metadata == null && exportSink == null) {
+                sync(job.staged);
+                if (!commit(job)) {
+                    abort(job, null, partial, null);
+                    return;
+                }
+                if (job.staged.renameTo(job.target)) {
+                    job.listener.onProgress(job.id, total, total);
+                    job.listener.onReady(job.id, job.target);
+                    return;
+                }
+                // Another filesystem, copy after all
+            }
+
+            if (exportSink != null) {
+                exportSink.onStart(job.id, total);
+            }
+
+            InputStream in = new FileInputStream(job.staged);
+            try {
+                FileOutputStream file = new FileOutputStream(partial);
+                try {
+                    // The sink sees the bytes as they are written, metadata included
+                    OutputStream sinkOut = exportSink != null ? new SinkOutputStream(file, exportSink, job.id) : file;
+                    ExifOutputStream exifOut = metadata != null ? new ExifOutputStream(sinkOut, metadata) : null;
+                    OutputStream out = exifOut != null ? exifOut : sinkOut;
+                    byte[] buffer = new byte[CHUNK_SIZE];
+                    long written = 0;
+                    long reported = 0;
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        if (isCanceled(job)) {
+                            break;
+                        }
+                        out.write(buffer, 0, count);
+                        written += count;
+                        if (written - reported >= total / PROGRESS_STEPS || written == total) {
+                            reported = written;
+                            job.listener.onProgress(job.id, written, total);
+                        }
+                    }
+                    if (!isCanceled(job)) {
+                        if (exifOut != null) {
+                            exifOut.finish();
+                        }
+                        file.getFD().sync();
+                    }
+                } finally {
+                    file.close();
+                }
+            } finally {
+                in.close();
+            }
+
+            if (!commit(job)) {
+                abort(job, exportSink, partial, null);
+                return;
+            }
+
+            if (!partial.renameTo(job.target)) {
+                throw new IOException("Could not move export to " + job.target);
+            }
+            if (!job.staged.delete()) {
+                Log.w(TAG, "Could not delete staged export " + job.staged);
+            }
+
+            if (exportSink != null) {
+                exportSink.onComplete(job.id, job.target);
+            }
+            job.listener.onReady(job.id, job.target);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Export " + job.id + " failed", e);
+            abort(job, exportSink, partial, e);
+        }
+    }
+
+    // False if the job was canceled, otherwise it can't be from now on
+    private static boolean commit(Job job) {
+        synchronized (job) {
+            if (job.canceled) {
+                return false;
+            }
+            job.committed = true;
+            return true;
+        }
+    }
+
+    private static boolean isCanceled(Job job) {
+        synchronized (job) {
+            return job.canceled;
+        }
+    }
+
+    // The editor wrote the staged file without syncing it
+    private static void sync(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    // Passes every chunk on to the sink after writing it
+    private static final class SinkOutputStream extends FilterOutputStream {
+
+        private final ExportSink sink;
+        private final String exportId;
+
+        SinkOutputStream(OutputStream out, ExportSink sink, String exportId) {
+            super(out);
+            this.sink = sink;
+            this.exportId = exportId;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            sink.onChunk(exportId, b, off, len);
+        }
+    }
+
+    private static void abort(Job job, @Nullable ExportSink exportSink, File partial, @Nullable Exception error) {
+        partial.delete();
+        job.staged.delete();
+        if (exportSink != null) {
+            try {
+                exportSink.onAbort(job.id);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Export sink failed to abort " + job.id, e);
+            }
+        }
+        job.listener.onFailed(job.id, error);
+    }
+}
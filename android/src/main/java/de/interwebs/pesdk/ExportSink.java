@@ -0,0 +1,35 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives the bytes of an asynchronous export while they are written to the export target,
+ * e.g. to start an upload before the file is complete. Register it with ExportPipeline.setSink.
+ *
+ * All calls of one export come from the export thread, in order.
+ */
+public interface ExportSink {
+
+    void onStart(@NonNull String exportId, long length);
+
+    // buffer is reused for the next chunk, copy what has to be kept. Throwing fails the export
+    void onChunk(@NonNull String exportId, @NonNull byte[] buffer, int offset, int count) throws IOException;
+
+    // The file is synced to disk
+    void onComplete(@NonNull String exportId, @NonNull File file);
+
+    // Cancelled or failed, what was passed on so far is garbage
+    void onAbort(@NonNull String exportId);
+}
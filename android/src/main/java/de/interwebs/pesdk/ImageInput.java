@@ -0,0 +1,186 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.interwebs.pesdk.exif.ExifData;
+import de.interwebs.pesdk.exif.ExifReader;
+import de.interwebs.pesdk.tile.Orientation;
+
+/**
+ * Reads an input image given as a file path, a file:// URI or a content:// URI, e.g. a picker
+ * result from the gallery or a document provider.
+ *
+ * Content is read through the provider's file descriptor where it is, nothing is copied to a
+ * temp file first. Every call opens the input anew, so providers that hand out pipes work too.
+ */
+final class ImageInput {
+
+    private static final String TAG = "PESDK";
+
+    private ImageInput() {}
+
+    static boolean isContent(@NonNull String input) {
+        return input.startsWith(ContentResolver.SCHEME_CONTENT + "://");
+    }
+
+    // What the editor loads
+    @NonNull
+    static Uri uri(@NonNull String input) {
+        return isContent(input) ? Uri.parse(input) : Uri.fromFile(new File(RecipeRenderer.path(input)));
+    }
+
+    @NonNull
+    static ParcelFileDescriptor openDescriptor(@NonNull ContentResolver resolver, @NonNull String input) throws IOException {
+        if (!isContent(input)) {
+            return ParcelFileDescriptor.open(new File(RecipeRenderer.path(input)), ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(Uri.parse(input), "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("No content at " + input);
+        }
+        return descriptor;
+    }
+
+    @NonNull
+    static InputStream open(@NonNull ContentResolver resolver, @NonNull String input) throws IOException {
+        if (!isContent(input)) {
+            return new FileInputStream(RecipeRenderer.path(input));
+        }
+        InputStream in = resolver.openInputStream(Uri.parse(input));
+        if (in == null) {
+            throw new FileNotFoundException("No content at " + input);
+        }
+        return in;
+    }
+
+    // Decodes with the given options, null like BitmapFactory if it couldn't
+    @Nullable
+    static Bitmap decode(@NonNull ContentResolver resolver, @NonNull String input, @NonNull BitmapFactory.Options options) throws IOException {
+        if (!isContent(input)) {
+            return BitmapFactory.decodeFile(RecipeRenderer.path(input), options);
+        }
+        ParcelFileDescriptor descriptor = openDescriptor(resolver, input);
+        try {
+            return BitmapFactory.decodeFileDescriptor(descriptor.getFileDescriptor(), null, options);
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    // Size and type without decoding, outWidth and outHeight are -1 if the input can't be read
+    @NonNull
+    static BitmapFactory.Options bounds(@NonNull ContentResolver resolver, @NonNull String input) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try {
+            decode(resolver, input, options);
+        } catch (IOException e) {
+            Log.d(TAG, "Could not open " + input, e);
+            options.outWidth = -1;
+            options.outHeight = -1;
+        }
+        return options;
+    }
+
+    @NonNull
+    static BitmapRegionDecoder regionDecoder(@NonNull ContentResolver resolver, @NonNull String input) throws IOException {
+        BitmapRegionDecoder decoder;
+        if (!isContent(input)) {
+            decoder = BitmapRegionDecoder.newInstance(RecipeRenderer.path(input), false);
+        } else {
+            // The decoder reads the whole stream up front for anything that can't seek
+            ParcelFileDescriptor descriptor = openDescriptor(resolver, input);
+            try {
+                decoder = BitmapRegionDecoder.newInstance(descriptor.getFileDescriptor(), false);
+            } finally {
+                descriptor.close();
+            }
+        }
+        if (decoder == null) {
+            throw new IOException("Could not read image " + input);
+        }
+        return decoder;
+    }
+
+    // Size in bytes, -1 if the provider doesn't know
+    static long length(@NonNull ContentResolver resolver, @NonNull String input) {
+        if (!isContent(input)) {
+            return new File(RecipeRenderer.path(input)).length();
+        }
+        try {
+            ParcelFileDescriptor descriptor = openDescriptor(resolver, input);
+            try {
+                return descriptor.getStatSize();
+            } finally {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // The input's EXIF, read from the markers in front of its image data. Null if it has none
+    @Nullable
+    static ExifData exif(@NonNull ContentResolver resolver, @NonNull String input) throws IOException {
+        InputStream in = open(resolver, input);
+        try {
+            return ExifReader.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    // EXIF orientation, one of the ExifInterface.ORIENTATION_ constants, on every API level and for content too
+    static int exifOrientation(@NonNull ContentResolver resolver, @NonNull String input) throws IOException {
+        ExifData exif = exif(resolver, input);
+        return exif != null ? exif.orientation() : ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    // How the input's pixels have to be turned to show upright, normal if its EXIF can't be read
+    @NonNull
+    static Orientation orientation(@NonNull ContentResolver resolver, @NonNull String input) {
+        try {
+            return Orientation.exif(exifOrientation(resolver, input));
+        } catch (IOException e) {
+            Log.d(TAG, "No EXIF in " + input, e);
+            return Orientation.NORMAL;
+        }
+    }
+
+    // File extension with the dot, from the name or the provider's MIME type, .jpg if neither tells
+    @NonNull
+    static String extension(@NonNull ContentResolver resolver, @NonNull String input) {
+        if (isContent(input)) {
+            String extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(resolver.getType(Uri.parse(input)));
+            return extension != null ? "." + extension : ".jpg";
+        }
+        String name = new File(RecipeRenderer.path(input)).getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : ".jpg";
+    }
+}
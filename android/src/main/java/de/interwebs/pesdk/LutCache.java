@@ -0,0 +1,116 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.interwebs.pesdk.lut.Lut3D;
+import de.interwebs.pesdk.lut.LutFile;
+import de.interwebs.pesdk.lut.LutLayout;
+
+/**
+ * Compiled LUTs of the custom filters, keyed by filter id.
+ *
+ * A filter texture is decoded and compiled once, written to the cache dir as a LutFile and
+ * memory-mapped from then on.
+ */
+final class LutCache {
+
+    private static final String TAG = "PESDK";
+
+    private final Resources res;
+    private final AssetRegistry assets;
+    private final File dir;
+    private final Map<String, Lut3D> mapped = new ConcurrentHashMap<>();
+
+    LutCache(@NonNull Context context, @NonNull AssetRegistry assets) {
+        this.res = context.getResources();
+        this.assets = assets;
+        this.dir = CacheDirs.versioned(context, "pesdk-luts");
+    }
+
+    @NonNull
+    Lut3D get(@NonNull String filterId) throws IOException {
+        Lut3D lut = mapped.get(filterId);
+        if (lut != null) {
+            return lut;
+        }
+
+        synchronized (this) {
+            lut = mapped.get(filterId);
+            if (lut == null) {
+                lut = load(filterId);
+                mapped.put(filterId, lut);
+            }
+        }
+        return lut;
+    }
+
+    private Lut3D load(String filterId) throws IOException {
+        File file = new File(dir, filterId + ".lut");
+        if (file.exists()) {
+            try {
+                return LutFile.map(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Recompiling LUT " + filterId + ": " + e.getMessage());
+                file.delete();
+            }
+        }
+
+        LutLayout layout = assets.lutLayout(filterId);
+        Lut3D lut = compile(filterId, layout);
+
+        if (dir.exists() || dir.mkdirs()) {
+            LutFile.write(file, lut, layout);
+            return LutFile.map(file);
+        }
+        return lut;
+    }
+
+    private Lut3D compile(String filterId, LutLayout layout) throws IOException {
+        int resId = assets.drawable(filterId);
+        if (resId == 0) {
+            throw new IOException("No LUT texture for filter " + filterId);
+        }
+
+        // LUT textures must not be scaled to the screen density
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap texture = BitmapFactory.decodeResource(res, resId, options);
+        if (texture == null) {
+            throw new IOException("Could not decode LUT texture for filter " + filterId);
+        }
+
+        try {
+            int width = texture.getWidth();
+            int height = texture.getHeight();
+            int[] argb = new int[width * height];
+            texture.getPixels(argb, 0, width, 0, 0, width, height);
+            return Lut3D.compile(argb, width, height, layout);
+        } finally {
+            texture.recycle();
+        }
+    }
+
+    void clear() {
+        mapped.clear();
+    }
+}
@@ -14,9 +14,19 @@ import nl.onstuimig.perfectphoto.CustomEventTracker;
 import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Color;
+import android.media.MediaScannerConnection;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseArray;
 
 import com.facebook.react.bridge.ActivityEventListener;
 import com.facebook.react.bridge.BaseActivityEventListener;
@@ -28,10 +38,35 @@ import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableType;
-
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.interwebs.pesdk.analytics.AnalyticsEvent;
+import de.interwebs.pesdk.analytics.AnalyticsPipeline;
+import de.interwebs.pesdk.analytics.EditAggregator;
+import de.interwebs.pesdk.exif.ExifAllowList;
+import de.interwebs.pesdk.exif.ExifOutputStream;
+import de.interwebs.pesdk.metrics.LatencyHistogram;
+import de.interwebs.pesdk.metrics.Metrics;
 
 import ly.img.android.sdk.decoder.ImageSource;
 import ly.img.android.sdk.filter.LutColorFilter;
@@ -49,7 +84,6 @@ import ly.img.android.sdk.models.config.interfaces.StickerListConfigInterface;
 import ly.img.android.sdk.models.config.interfaces.StickerConfigInterface;
 import ly.img.android.sdk.models.config.OverlayConfig;
 import ly.img.android.sdk.models.constant.BlendMode;
-import ly.img.android.sdk.models.constant.Directory;
 import ly.img.android.sdk.models.state.CameraSettings;
 import ly.img.android.sdk.models.state.EditorLoadSettings;
 import ly.img.android.sdk.models.state.EditorMenuState;
@@ -71,15 +105,50 @@ import ly.img.android.ui.activities.PhotoEditorBuilder;
 
 public class PESDKModule extends ReactContextBaseJavaModule {
 
+    private static final String TAG = "PESDK";
+
     // the answer to life the universe and everything
     static final int RESULT_CODE_PESDK = 42;
 
-    // Promise for later use
-    private Promise mPESDKPromise;
+    static final String ANALYTICS_TRACKER_ID = "UA-35482641-44";
+
+    // Request codes are handed out from RESULT_CODE_PESDK on, support activities only pass 16 bits
+    private static final int MAX_REQUEST_CODE = 0xffff;
+
+    // A started editor activity and who is waiting for its result
+    private static final class EditorSession {
+        // see SessionTokens
+        final String token;
+        @Nullable final Promise promise;
+        @Nullable final EditorQueue queue;
+        final ExportOptions export;
+        // Null for the camera
+        @Nullable final String image;
+        // What the editor was opened with instead of image, see proxyKey
+        @Nullable final ProxyImage proxy;
+
+        EditorSession(String token, @Nullable Promise promise, @Nullable EditorQueue queue, ExportOptions export, @Nullable String image, @Nullable ProxyImage proxy) {
+            this.token = token;
+            this.image = image;
+            this.proxy = proxy;
+            this.promise = promise;
+            this.queue = queue;
+            this.export = export;
+        }
+    }
+
+    // Running editor sessions by request code
+    private final SparseArray<EditorSession> mSessions = new SparseArray<>();
+    private int mNextRequestCode = RESULT_CODE_PESDK;
 
     // Error constants
     private static final String E_ACTIVITY_DOES_NOT_EXIST = "ACTIVITY_DOES_NOT_EXIST";
     private static final String E_PESDK_CANCELED = "USER_CANCELED_EDITING";
+    private static final String E_CATALOG_NOT_FOUND = "CATALOG_NOT_FOUND";
+    private static final String E_PRELOAD_FAILED = "PRELOAD_FAILED";
+    private static final String E_INVALID_RECIPE = "INVALID_RECIPE";
+    private static final String E_INVALID_OPTIONS = "INVALID_OPTIONS";
+    private static final String E_EXPORT_FAILED = "EXPORT_FAILED";
 
     // Features
     public static final String transformTool = "transformTool";
@@ -99,55 +168,146 @@ public class PESDKModule extends ReactContextBaseJavaModule {
     public static final String cameraRollAllowedKey = "cameraRollAllowed";
     public static final String showFiltersInCameraKey = "showFiltersInCamera";
 
+    // Export options, see ExportOptions
+    public static final String exportDirectoryKey = "exportDirectory";
+    public static final String exportFolderKey = "exportFolder";
+    public static final String exportPrefixKey = "exportPrefix";
+    public static final String exportFormatKey = "exportFormat";
+    public static final String exportQualityKey = "exportQuality";
+    public static final String exportAsyncKey = "exportAsync";
+    public static final String outputsKey = "outputs";
+    public static final String savePolicyKey = "savePolicy";
+    public static final String richResultKey = "richResult";
+    public static final String proxyKey = "proxy";
+    public static final String exportMetadataKey = "exportMetadata";
+
+    // Custom options
+    public static final String catalogKey = "catalog";
+
+    // Events
+    public static final String batchProgressEvent = "PESDKBatchProgress";
+    public static final String queueResultEvent = "PESDKQueueResult";
+    public static final String exportProgressEvent = "PESDKExportProgress";
+    public static final String exportReadyEvent = "PESDKExportReady";
+    public static final String exportFailedEvent = "PESDKExportFailed";
+
     private ReactApplicationContext ctx;
 
+    // Resolves catalog asset names to resource ids
+    private final AssetRegistry mAssets;
+
+    // Catalogs compiled via registerCatalog, by id, and the custom maps they were built from
+    private final Map<String, CompiledCatalog> mCatalogs = new ConcurrentHashMap<>();
+    private final Map<String, HashMap<String, Object>> mCatalogSources = new ConcurrentHashMap<>();
+
+    // Inline catalog compiled by the last preload call and the custom map it was built from
+    private volatile CompiledCatalog mPreloadedCatalog;
+    private volatile HashMap<String, Object> mPreloadedCustom;
+
+    private final ThumbnailCache mThumbnails;
+
+    // Periodic logcat dump of the metrics, see setMetricsLogInterval
+    private final Handler mMetricsHandler = new Handler(Looper.getMainLooper());
+    private long mMetricsLogIntervalMs;
+    private final Runnable mMetricsLogTask = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(TAG, "Metrics\n" + Metrics.shared().dump());
+            mMetricsHandler.postDelayed(this, mMetricsLogIntervalMs);
+        }
+    };
+    private final LutCache mLuts;
+    private final RecipeRenderer mRenderer;
+    private final ExportPipeline mExports = new ExportPipeline();
+    private final RenderCache mRenderCache = new RenderCache(64);
+
+    // Preloads run one after another, thumbnail decoding is spread over all cores
+    private final ExecutorService mPreloadExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mDecodeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
     // Listen for onActivityResult
     private final ActivityEventListener mActivityEventListener = new BaseActivityEventListener() {
         @Override
         public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
-            switch (requestCode) {
-                case RESULT_CODE_PESDK: {
-                    switch (resultCode) {
-                        case Activity.RESULT_CANCELED:
-                            mPESDKPromise.reject(E_PESDK_CANCELED, "Editor was cancelled");
-                            break;
-                        case Activity.RESULT_OK:
-                            String resultPath = data.getStringExtra(ImgLyIntent.RESULT_IMAGE_PATH);
-                            mPESDKPromise.resolve(resultPath);
-                            break;
-                    }
-                    mPESDKPromise = null;
-                    break;
-                }
+            EditorSession session;
+            synchronized (mSessions) {
+                session = mSessions.get(requestCode);
+                mSessions.remove(requestCode);
+            }
+            if (session == null) {
+                return;
+            }
+            long exportNanos = Metrics.shared().sessionEnded(session.token, resultCode == Activity.RESULT_OK);
+            EditSummary edits = EditSummary.finish(session.token);
+            AnalyticsPipeline analytics = AnalyticsPipeline.get(ctx, ANALYTICS_TRACKER_ID);
+            AnalyticsEvent summary = EditAggregator.finish(session.token);
+            if (summary != null) {
+                analytics.track(summary);
+            }
+            // Don't wait for the flush interval, the app may be closed after editing
+            analytics.requestFlush();
+
+            String resultPath = resultCode == Activity.RESULT_OK && data != null ? data.getStringExtra(ImgLyIntent.RESULT_IMAGE_PATH) : null;
+
+            if (resultPath == null) {
+                deliver(activity, session, resultCode, null, null, null);
+                return;
+            }
+
+            // An untouched proxy stands for its source
+            if (session.proxy != null && sameFile(resultPath, session.proxy.path)) {
+                resultPath = session.image;
+            }
+
+            // Nothing was changed and the editor handed back its source, which is passed on without a decode or encode
+            boolean unchanged = session.image != null && session.export.unchanged != null && sameFile(resultPath, session.image);
+            // Never over the source itself
+            boolean replay = session.proxy != null && !sameFile(resultPath, session.image);
+            // Async exports get the metadata on their way to the target
+            boolean metadata = session.export.metadata != null && session.image != null && !session.export.async && !unchanged
+                    && !sameFile(resultPath, session.image);
+            if ((unchanged && !ExportOptions.UNCHANGED_SOURCE.equals(session.export.unchanged)) || session.export.richResult || replay || metadata) {
+                prepare(activity, session, resultCode, resultPath, unchanged, replay, metadata, exportNanos, edits);
+            } else {
+                deliver(activity, session, resultCode, resultPath, unchanged ? ExportOptions.UNCHANGED_SOURCE : null, null);
             }
         }
     };
 
 
     public PESDKModule(ReactApplicationContext context) {
+        this(context, null);
+    }
+
+    public PESDKModule(ReactApplicationContext context, @Nullable AssetRegistry assets) {
         super(context);
         context.addActivityEventListener(mActivityEventListener);
 
         ctx = context;
+        mAssets = new ResourceAssetRegistry(context, assets);
+        mThumbnails = new ThumbnailCache(context);
+        mLuts = new LutCache(context, mAssets);
+        mRenderer = new RecipeRenderer(context.getResources(), context.getContentResolver(), mAssets, mLuts);
     }
 
     // Config builder
-    private SettingsList buildConfig(ReadableMap options, @Nullable ReadableArray features, @Nullable ReadableMap custom, @Nullable String imagePath) {
+    private SettingsList buildConfig(ReadableMap options, @Nullable ReadableArray features, @Nullable CompiledCatalog catalog, @Nullable String imagePath, @NonNull ExportOptions export, @NonNull String sessionToken) {
         SettingsList settingsList = new SettingsList();
-        settingsList
-                .getSettingsModel(EditorLoadSettings.class)
-                .setImageSourcePath(imagePath)
-                .getSettingsModel(EditorSaveSettings.class)
-                // TODO: Make export directory configurable
-                .setExportDir(Directory.DCIM, "perfectphoto")
-                .setExportPrefix("perfectphoto_")
-                .setSavePolicy(
-                        EditorSaveSettings.SavePolicy.RETURN_ALWAYS_ONLY_OUTPUT
-                );
+        // Content is loaded from its URI, not copied to a file first
+        if (imagePath != null && ImageInput.isContent(imagePath)) {
+            settingsList
+                    .getSettingsModel(EditorLoadSettings.class)
+                    .setImageSource(Uri.parse(imagePath));
+        } else {
+            settingsList
+                    .getSettingsModel(EditorLoadSettings.class)
+                    .setImageSourcePath(imagePath);
+        }
+        export.applyTo(ctx, settingsList.getSettingsModel(EditorSaveSettings.class));
 
 
         settingsList.setEventProcessor(de.interwebs.pesdk.PESDKEvents.class);
-        settingsList.setEventTracker(new CustomEventTracker("UA-35482641-44"));
+        settingsList.setEventTracker(new CustomEventTracker(ANALYTICS_TRACKER_ID, sessionToken));
 
                 // TODO: Config options in PESDK v5 are limited compared to iOS (or I didn't find them)
 
@@ -209,321 +369,530 @@ public class PESDKModule extends ReactContextBaseJavaModule {
 
         config.setTools(tools);
 
-        if ( custom != null )
+        if ( catalog != null )
         {
-            Boolean includeDefaultFilters = custom.hasKey("includeDefaultFilters") ? custom.getBoolean("includeDefaultFilters") : true;
-            Boolean includeDefaultOverlays = custom.hasKey("includeDefaultOverlays") ? custom.getBoolean("includeDefaultOverlays") : true;
-            Boolean includeDefaultStickerCategories = custom.hasKey("includeDefaultStickerCategories") ? custom.getBoolean("includeDefaultStickerCategories") : true;
-            Boolean includeDefaultBrushColors = custom.hasKey("includeDefaultBrushColors") ? custom.getBoolean("includeDefaultBrushColors") : true;
-            Boolean includeDefaultStickerColors = custom.hasKey("includeDefaultStickerColors") ? custom.getBoolean("includeDefaultStickerColors") : true;
-            Boolean includeDefaultTransforms = custom.hasKey("includeDefaultTransforms") ? custom.getBoolean("includeDefaultTransforms") : true;
-
-            /* Set custom Filters */
-            if( custom.hasKey("filters") || includeDefaultFilters == false )
-            {
-                /* Set Default Filter Array */
-                ArrayList<ImageFilterInterface> filters = new ArrayList<ImageFilterInterface>();
-
-                if(includeDefaultFilters){
-                    filters = config.getFilterConfig();
-                }else{
-                    filters.add(new NoneImageFilter());
-                }
-
-
-                /* Set Filters */
-                if( custom.hasKey("filters") ) {
-                    ReadableArray filtersConfig = custom.getArray("filters");
-                    for (int i = 0; i < filtersConfig.size(); i++) {
-                        ReadableMap filter = filtersConfig.getMap(i);
-                        String filter_id = filter.getString("id");
-                        String filter_label = filter.getString("label");
+            catalog.applyTo(config);
+        }
 
-                        int vTiles = 5;
-                        int hTiles = 5;
-                        int textureSize = 128;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Editor Intent carries " + SessionTokens.parcelSize(settingsList) + " bytes of settings");
+        }
 
-                        String[] filter_segments = filter_id.split("_");
-                        if(filter_segments.length >= 4){
-                            textureSize = Integer.parseInt(filter_segments[filter_segments.length-1]);
-                            hTiles = Integer.parseInt(filter_segments[filter_segments.length-2]);
-                            vTiles = Integer.parseInt(filter_segments[filter_segments.length-3]);
-                        }
+        return settingsList;
+    }
 
-                        filters.add(new LutColorFilter(filter_id, ctx.getResources().getIdentifier(filter_id, "string", ctx.getPackageName()), R.drawable.imgly_filter_preview_photo, ImageSource.create(ctx.getResources().getIdentifier(filter_id, "drawable", ctx.getPackageName())), vTiles, hTiles, textureSize));
-                    }
-                }
+    // Either a registered catalog referenced by id or an inline custom map compiled for this open only
+    @Nullable
+    private CompiledCatalog resolveCatalog(@Nullable ReadableMap custom) {
+        if (custom == null) {
+            return null;
+        }
 
-                config.setFilters(filters);
+        if (custom.hasKey(catalogKey)) {
+            String id = custom.getString(catalogKey);
+            CompiledCatalog catalog = mCatalogs.get(id);
+            if (catalog == null) {
+                throw new IllegalArgumentException("No catalog registered with id " + id);
             }
+            Log.d(TAG, "Reusing catalog " + id + ", saved ~" + catalog.compileTimeMs + "ms");
+            return catalog;
+        }
 
-            /* Set custom Overlays */
-            if( custom.hasKey("overlays") || includeDefaultOverlays == false )
-            {
-                /* Set Default Overlay Array */
-                ArrayList<OverlayConfig> overlays = new ArrayList<OverlayConfig>();
+        CompiledCatalog preloaded = mPreloadedCatalog;
+        if (preloaded != null && custom.toHashMap().equals(mPreloadedCustom)) {
+            Log.d(TAG, "Reusing preloaded catalog, saved ~" + preloaded.compileTimeMs + "ms");
+            return preloaded;
+        }
 
-                if(includeDefaultFilters){
-                    overlays = config.getOverlays();
-                }else{
-                    overlays.add(OverlayConfig.NON_BACKDROP);
-                }
+        return CompiledCatalog.compile(mAssets, mThumbnails, custom);
+    }
 
+    // The catalog compiled again from the same custom map, e.g. once its thumbnails were written to disk
+    @NonNull
+    private CompiledCatalog recompile(@NonNull ReadableMap custom, @NonNull CompiledCatalog catalog) {
+        if (!custom.hasKey(catalogKey)) {
+            return CompiledCatalog.compile(mAssets, mThumbnails, custom);
+        }
 
-                /* Set Overlays */
-                if( custom.hasKey("overlays") ){
-                    ReadableArray overlaysConfig = custom.getArray("overlays");
-                    for (int i = 0; i < overlaysConfig.size(); i++) {
-                        ReadableMap overlay = overlaysConfig.getMap(i);
-                        String overlay_id = overlay.getString("id");
-                        String overlay_label = overlay.getString("label");
-                        String overlay_blendmode = overlay.getString("blendMode").toLowerCase();
-
-                        BlendMode defaultBlendMode = BlendMode.NORMAL;
-                        switch(overlay_blendmode){
-                            case "color_burn":
-                            defaultBlendMode = BlendMode.COLOR_BURN;
-                            break;
-                            case "darken":
-                                defaultBlendMode = BlendMode.DARKEN;
-                                break;
-                            case "lighten":
-                                defaultBlendMode = BlendMode.LIGHTEN;
-                                break;
-                            case "hard_light":
-                                defaultBlendMode = BlendMode.HARD_LIGHT;
-                                break;
-                            case "soft_light":
-                                defaultBlendMode = BlendMode.SOFT_LIGHT;
-                                break;
-                            case "multiply":
-                                defaultBlendMode = BlendMode.MULTIPLY;
-                                break;
-                            case "overlay":
-                                defaultBlendMode = BlendMode.OVERLAY;
-                                break;
-                            case "screen":
-                                defaultBlendMode = BlendMode.SCREEN;
-                                break;
-                            case "normal":
-                            default:
-                                defaultBlendMode = BlendMode.NORMAL;
-                        }
+        String id = custom.getString(catalogKey);
+        HashMap<String, Object> source = mCatalogSources.get(id);
+        if (source == null) {
+            return catalog;
+        }
+        CompiledCatalog compiled = CompiledCatalog.compile(mAssets, mThumbnails, Arguments.makeNativeMap(source));
+        // Unless it was unregistered or replaced in the meantime
+        return mCatalogs.replace(id, catalog, compiled) ? compiled : catalog;
+    }
 
-                        overlays.add(
-                            new OverlayConfig(
-                                overlay_id,
-                                overlay_label,
-                                ImageSource.create(ctx.getResources().getIdentifier(overlay_id+"_thumb", "drawable", ctx.getPackageName())),
-                                ImageSource.create(ctx.getResources().getIdentifier(overlay_id, "drawable", ctx.getPackageName())),
-                                defaultBlendMode,
-                                1f
-                            )
-                        );
-                    }
+    // Opens the editor, or the camera if there is no image, under a request code of its own
+    private void startSession(@NonNull final Activity activity, @Nullable final String image, @Nullable final ReadableArray features, @Nullable final ReadableMap options,
+                              @Nullable final CompiledCatalog catalog, @NonNull final ExportOptions export, @Nullable final Promise promise, @Nullable final EditorQueue queue) {
+        final int proxyMaxEdge = proxyMaxEdge(options);
+        if (image == null || proxyMaxEdge <= 0) {
+            launchSession(activity, image, null, features, options, catalog, export, promise, queue);
+            return;
+        }
+
+        // Decoding the proxy takes a while for large photos, the editor is launched once it's there
+        mDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = Metrics.shared().now();
+                ProxyImage proxy = null;
+                try {
+                    proxy = ProxyImage.create(ctx, mRenderer, image, proxyMaxEdge);
+                    Metrics.shared().recordSince(Metrics.PROXY, start);
+                } catch (IOException | OutOfMemoryError e) {
+                    Log.w(TAG, "Could not create a proxy of " + image + ", editing the original", e);
                 }
 
-                config.setOverlays(overlays);
+                final ProxyImage created = proxy;
+                UiThreadUtil.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        launchSession(activity, image, created, features, options, catalog, export, promise, queue);
+                    }
+                });
             }
+        });
+    }
 
-            /* Set custom Stickers */
-            if( custom.hasKey("stickerCategories") || includeDefaultStickerCategories == false )
-            {
-                /* Set Default Sticker Category Array */
-                ArrayList<StickerListConfigInterface> stickerCats = new ArrayList<StickerListConfigInterface>();
+    // Max edge of proxies: the screen's long edge for true, a number of pixels or 0 for none
+    private int proxyMaxEdge(@Nullable ReadableMap options) {
+        if (options == null || !options.hasKey(proxyKey)) {
+            return 0;
+        }
+        switch (options.getType(proxyKey)) {
+            case Boolean:
+                DisplayMetrics metrics = ctx.getResources().getDisplayMetrics();
+                return options.getBoolean(proxyKey) ? Math.max(metrics.widthPixels, metrics.heightPixels) : 0;
+            case Number:
+                return Math.max(0, options.getInt(proxyKey));
+            default:
+                return 0;
+        }
+    }
 
-                if(includeDefaultStickerCategories){
-                    stickerCats = config.getStickerConfig();
-                }
+    private void launchSession(@NonNull Activity activity, @Nullable String image, @Nullable ProxyImage proxy, @Nullable ReadableArray features, @Nullable ReadableMap options,
+                               @Nullable CompiledCatalog catalog, @NonNull ExportOptions export, @Nullable Promise promise, @Nullable EditorQueue queue) {
+        String token = SessionTokens.newToken();
+        int requestCode;
+        synchronized (mSessions) {
+            do {
+                requestCode = mNextRequestCode;
+                mNextRequestCode = mNextRequestCode < MAX_REQUEST_CODE ? mNextRequestCode + 1 : RESULT_CODE_PESDK;
+            } while (mSessions.get(requestCode) != null);
+            mSessions.put(requestCode, new EditorSession(token, promise, queue, export, image, proxy));
+        }
 
+        long start = Metrics.shared().now();
+        SettingsList settingsList = buildConfig(options, features, catalog, proxy != null ? proxy.path : image, export, token);
+        Metrics.shared().recordSince(Metrics.BUILD_CONFIG, start);
 
-                /* Set Sticker Categories */
-                if( custom.hasKey("stickerCategories") ){
-                    ReadableArray stickerCatsConfig = custom.getArray("stickerCategories");
-                    for (int i = 0; i < stickerCatsConfig.size(); i++) {
-                        ReadableMap stickerCat = stickerCatsConfig.getMap(i);
-                        String stickerCat_id = stickerCat.getString("id");
-                        String stickerCat_label = stickerCat.getString("label");
-
-                        /* Set Stickers */
-                        ReadableArray stickersArray = stickerCat.getArray("stickers");
-                        ArrayList<StickerConfigInterface> stickers = new ArrayList<StickerConfigInterface>();
-
-                        for (int j = 0; j < stickersArray.size(); j++) {
-                            ReadableMap sticker = stickersArray.getMap(j);
-                            String sticker_id = sticker.getString("id");
-
-                            String sticker_tint = "none";
-                            if(sticker.hasKey("tintMode"))
-                                sticker_tint = sticker.getString("tintMode").toLowerCase();
-
-                            String sticker_label = sticker_id;
-                            if(sticker.hasKey("label"))
-                                sticker_label = sticker.getString("label");
-
-                            ImageStickerConfig.OPTION_MODE tintMode = ImageStickerConfig.OPTION_MODE.NON_OPTIONS;
-                            switch(sticker_tint){
-                                case "colorized":
-                                    tintMode = ImageStickerConfig.OPTION_MODE.INK_STICKER;
-                                    break;
-                                case "none":
-                                default:
-                                    tintMode = ImageStickerConfig.OPTION_MODE.NON_OPTIONS;
-                            }
+        Metrics.shared().sessionLaunched(token);
 
-                            stickers.add(
-                                new ImageStickerConfig(
-                                    sticker_id,
-                                    sticker_label,
-                                    ImageSource.create(ctx.getResources().getIdentifier(sticker_id+"_thumb", "drawable", ctx.getPackageName())),
-                                    ImageSource.create(ctx.getResources().getIdentifier(sticker_id, "drawable", ctx.getPackageName())),
-                                    tintMode
-                                )
-                            );
-                        }
+        if (image != null) {
+            new PhotoEditorBuilder(activity)
+                    .setSettingsList(settingsList)
+                    .startActivityForResult(activity, requestCode);
+        } else {
+            new CameraPreviewBuilder(activity)
+                    .setSettingsList(settingsList)
+                    .startActivityForResult(activity, requestCode);
+        }
+    }
 
-                        stickerCats.add(
-                            new StickerCategoryConfig(
-                                stickerCat_label,
-                                ImageSource.create(ctx.getResources().getIdentifier(stickerCat_id, "drawable", ctx.getPackageName())),
-                                stickers
-                            )
-                        );
-                    }
-                }
+    // Resolves the session's promise or continues its queue. shortCircuit tells how an unchanged image was passed on
+    private void deliver(Activity activity, EditorSession session, int resultCode, @Nullable String resultPath, @Nullable String shortCircuit, @Nullable ResultInfo info) {
+        // Async exports resolve with where the image will be, the events tell when it's there
+        String exportId = null;
+        if (resultPath != null && shortCircuit == null && session.export.async) {
+            exportId = session.token;
+            resultPath = startExport(exportId, session.export, resultPath, session.image);
+        }
 
-                config.setStickerLists(stickerCats);
+        if (session.queue != null) {
+            onQueueResult(activity, session.queue, resultPath, exportId, shortCircuit, info);
+        } else if (resultCode == Activity.RESULT_OK && exportId == null && session.export.outputs != null) {
+            renderOutputs(session.export, resultPath, shortCircuit, info, session.promise);
+        } else if (resultCode == Activity.RESULT_OK && exportId != null) {
+            WritableMap result = Arguments.createMap();
+            result.putString("exportId", exportId);
+            result.putString("path", resultPath);
+            if (info != null) {
+                info.writeTo(result);
             }
+            session.promise.resolve(result);
+        } else if (resultCode == Activity.RESULT_OK && (session.export.unchanged != null || info != null)) {
+            WritableMap result = Arguments.createMap();
+            result.putString("path", resultPath);
+            result.putString("shortCircuit", shortCircuit);
+            if (info != null) {
+                info.writeTo(result);
+            }
+            session.promise.resolve(result);
+        } else if (resultCode == Activity.RESULT_OK) {
+            session.promise.resolve(resultPath);
+        } else {
+            session.promise.reject(E_PESDK_CANCELED, "Editor was cancelled");
+        }
+    }
 
-            /* Set custom Brush Colors */
-            if( custom.hasKey("brushColors") || includeDefaultBrushColors == false )
-            {
-                /* Set Default Brush Colors Array */
-                ArrayList<ColorConfigInterface> brushColors = new ArrayList<ColorConfigInterface>();
-
-                if(includeDefaultBrushColors){
-                    brushColors = config.getBrushColors();
+    // File work before the result can be delivered, off the UI thread: linking or copying an unchanged source, replaying a proxy session,
+    // carrying the source's metadata over and reading the result info
+    private void prepare(final Activity activity, final EditorSession session, final int resultCode, final String source, final boolean unchanged,
+                         final boolean replay, final boolean metadata, final long exportNanos, @Nullable final EditSummary edits) {
+        mDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String path = source;
+                String shortCircuit = unchanged ? ExportOptions.UNCHANGED_SOURCE : null;
+                if (unchanged && !ExportOptions.UNCHANGED_SOURCE.equals(session.export.unchanged)) {
+                    File target = unchangedTarget(session.export, source);
+                    try {
+                        shortCircuit = linkOrCopy(source, target, ExportOptions.UNCHANGED_LINK.equals(session.export.unchanged));
+                        path = target.getAbsolutePath();
+                        if (!session.export.isPrivate()) {
+                            MediaScannerConnection.scanFile(ctx, new String[] { path }, null, null);
+                        }
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not " + session.export.unchanged + " " + source + ", returning it as it is", e);
+                    }
                 }
 
+                byte[] segment = metadata ? sourceMetadata(session.export, session.image) : null;
 
-                /* Set Brush Colors */
-                if( custom.hasKey("brushColors") ) {
-                    ReadableArray brushConfig = custom.getArray("brushColors");
-                    for (int i = 0; i < brushConfig.size(); i++) {
-                        String brushColor = brushConfig.getString(i).toLowerCase();
-
-                        // Remove #
-                        brushColor = brushColor.replace("#", "");
-
-                        // Convert from 3 to 6 char hex
-                        if(brushColor.length() == 3){
-                            char h1 =  brushColor.charAt(0);
-                            char h2 =  brushColor.charAt(1);
-                            char h3 =  brushColor.charAt(2);
-                            brushColor =    Character.toString(h1) +
-                                            Character.toString(h1) +
-                                            Character.toString(h2) +
-                                            Character.toString(h2) +
-                                            Character.toString(h3) +
-                                            Character.toString(h3);
-                        }
-
-                        int colorInt = 0xff000000 | Integer.parseInt(brushColor, 16);
+                String proxy = null;
+                if (replay) {
+                    proxy = replayProxy(session, path, edits, segment) ? ResultInfo.PROXY_REPLAYED : ResultInfo.PROXY_KEPT;
+                }
+                // A replayed result was encoded with it already
+                if (segment != null && !ResultInfo.PROXY_REPLAYED.equals(proxy)) {
+                    writeMetadata(session.export, path, segment);
+                }
 
-                        brushColors.add(
-                            new ColorConfig(
-                                ctx.getResources().getIdentifier("pesdk_react_default_color_name", "string", ctx.getPackageName()),
-                                colorInt
-                            )
-                        );
+                // A kept proxy is smaller than the source, the result info always tells
+                final ResultInfo info = session.export.richResult || proxy != null
+                        ? ResultInfo.read(ctx.getContentResolver(), path, unchanged ? -1 : exportNanos, edits, proxy) : null;
+                final String resultPath = path;
+                final String taken = shortCircuit;
+                UiThreadUtil.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(activity, session, resultCode, resultPath, taken, info);
                     }
-                }
+                });
+            }
+        });
+    }
 
-                config.setBrushColors(brushColors);
+    /**
+     * Renders the edits of a proxy session onto the full resolution source, over the editor's
+     * result. Only filters can be replayed, false keeps the proxy sized result.
+     */
+    private boolean replayProxy(@NonNull EditorSession session, @NonNull String resultPath, @Nullable EditSummary edits, @Nullable byte[] metadata) {
+        ProxyImage proxy = session.proxy;
+        if (edits != null && !edits.onlyFilter()) {
+            Log.i(TAG, "Edits of " + proxy.source + " can't be replayed, keeping the proxy sized result");
+            return false;
+        }
+
+        long start = Metrics.shared().now();
+        EditRecipe recipe = ProxyImage.replayRecipe(edits != null ? edits.filterId() : null, edits != null ? edits.filterIntensity() : 0);
+        File result = new File(RecipeRenderer.path(resultPath));
+        File partial = new File(result.getPath() + ".partial");
+        try {
+            int quality = session.export.quality > 0 ? session.export.quality : 95;
+            // The source was proxied for being large, it may not fit decoded either
+            if (mRenderer.estimateBytes(proxy.source, 0) > Runtime.getRuntime().maxMemory() / 4) {
+                mRenderer.renderTiled(proxy.source, partial, recipe, RecipeRenderer.DEFAULT_BAND_HEIGHT, quality, metadata);
+            } else {
+                mRenderer.render(proxy.source, partial, recipe, 0, quality, metadata);
+            }
+            if (!partial.renameTo(result)) {
+                throw new IOException("Could not move replayed result to " + result);
             }
+            Metrics.shared().recordSince(Metrics.REPLAY, start);
+            return true;
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            Log.w(TAG, "Could not replay edits onto " + proxy.source + ", keeping the proxy sized result", e);
+            partial.delete();
+            return false;
+        }
+    }
 
-            /* Set custom Sticker Colors */
-            if( custom.hasKey("stickerColors") || includeDefaultStickerColors == false )
-            {
-                /* Set Default Sticker Colors Array */
-                ArrayList<ColorConfigInterface> stickerColors = new ArrayList<ColorConfigInterface>();
+    // APP1 segment of the allowed EXIF tags of the source, null if there are none or they can't be read
+    @Nullable
+    private byte[] sourceMetadata(@NonNull ExportOptions export, @Nullable String source) {
+        if (export.metadata == null || source == null) {
+            return null;
+        }
+        try {
+            return mRenderer.metadata(source, export.metadata);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read metadata of " + source + ", exporting without it", e);
+            return null;
+        }
+    }
 
-                if(includeDefaultStickerColors){
-                    stickerColors = config.getStickerColorConfig();
+    // Puts the metadata into the editor's result in one pass over it, the editor encodes without it
+    private void writeMetadata(@NonNull ExportOptions export, @NonNull String resultPath, @NonNull byte[] metadata) {
+        long start = Metrics.shared().now();
+        File result = new File(RecipeRenderer.path(resultPath));
+        File partial = new File(result.getPath() + ".partial");
+        try {
+            InputStream in = new FileInputStream(result);
+            try {
+                OutputStream out = new ExifOutputStream(new FileOutputStream(partial), metadata);
+                try {
+                    byte[] buffer = new byte[64 * 1024];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    out.close();
                 }
+            } finally {
+                in.close();
+            }
+            if (!partial.renameTo(result)) {
+                throw new IOException("Could not move " + partial + " to " + result);
+            }
+            if (!export.isPrivate()) {
+                MediaScannerConnection.scanFile(ctx, new String[] { result.getAbsolutePath() }, null, null);
+            }
+            Metrics.shared().recordSince(Metrics.METADATA, start);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write metadata into " + result, e);
+            partial.delete();
+        }
+    }
 
+    @NonNull
+    private File unchangedTarget(@NonNull ExportOptions export, @NonNull String source) {
+        return new File(export.targetDir(ctx), export.prefix + System.currentTimeMillis() + ImageInput.extension(ctx.getContentResolver(), source));
+    }
 
-                /* Set Sticker Colors */
-                if( custom.hasKey("stickerColors") ) {
-                    ReadableArray stickerConfig = custom.getArray("stickerColors");
-                    for (int i = 0; i < stickerConfig.size(); i++) {
-                        String stickerColor = stickerConfig.getString(i).toLowerCase();
-
-                        // Remove #
-                        stickerColor = stickerColor.replace("#", "");
-
-                        // Convert from 3 to 6 char hex
-                        if(stickerColor.length() == 3){
-                            char h1 =  stickerColor.charAt(0);
-                            char h2 =  stickerColor.charAt(1);
-                            char h3 =  stickerColor.charAt(2);
-                            stickerColor =  Character.toString(h1) +
-                                            Character.toString(h1) +
-                                            Character.toString(h2) +
-                                            Character.toString(h2) +
-                                            Character.toString(h3) +
-                                            Character.toString(h3);
-                        }
-
-                        int colorInt = 0xff000000 | Integer.parseInt(stickerColor, 16);
+    // Hard link if asked for and possible, a copy on older devices, across file systems or of content. Returns which one it was
+    @NonNull
+    private String linkOrCopy(@NonNull String input, @NonNull File target, boolean link) throws IOException {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
 
-                        stickerColors.add(
-                            new ColorConfig(
-                                ctx.getResources().getIdentifier("pesdk_react_default_color_name", "string", ctx.getPackageName()),
-                                colorInt
-                            )
-                        );
+        if (ImageInput.isContent(input)) {
+            InputStream in = ImageInput.open(ctx.getContentResolver(), input);
+            try {
+                OutputStream out = new FileOutputStream(target);
+                try {
+                    byte[] buffer = new byte[64 * 1024];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
                     }
+                } finally {
+                    out.close();
                 }
-
-                config.setStickerColors(stickerColors);
+            } finally {
+                in.close();
             }
+            return ExportOptions.UNCHANGED_COPY;
+        }
 
-            if( custom.hasKey("transforms") || includeDefaultTransforms == false )
-            {
-                /* Set Default Transforms Array */
-                ArrayList<AspectConfigInterface> transforms = new ArrayList<AspectConfigInterface>();
+        File source = new File(RecipeRenderer.path(input));
 
-                if(includeDefaultTransforms){
-                    transforms = config.getAspects();
-                } else {
-                    transforms.add(CropAspectConfig.FREE_CROP);
+        if (link && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            try {
+                Os.link(source.getAbsolutePath(), target.getAbsolutePath());
+                return ExportOptions.UNCHANGED_LINK;
+            } catch (ErrnoException e) {
+                Log.d(TAG, "Could not link " + source + ", copying it", e);
+            }
+        }
+
+        FileChannel in = new FileInputStream(source).getChannel();
+        try {
+            FileChannel out = new FileOutputStream(target).getChannel();
+            try {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
                 }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return ExportOptions.UNCHANGED_COPY;
+    }
 
+    private static boolean sameFile(@NonNull String a, @NonNull String b) {
+        if (ImageInput.isContent(a) || ImageInput.isContent(b)) {
+            return a.equals(b);
+        }
+        File fileA = new File(RecipeRenderer.path(a));
+        File fileB = new File(RecipeRenderer.path(b));
+        try {
+            return fileA.getCanonicalPath().equals(fileB.getCanonicalPath());
+        } catch (IOException e) {
+            return fileA.getAbsolutePath().equals(fileB.getAbsolutePath());
+        }
+    }
 
-                /* Set Sticker Colors */
-                if( custom.hasKey("transforms") ) {
-                    ReadableArray transformsConfig = custom.getArray("transforms");
-                    for (int i = 0; i < transformsConfig.size(); i++) {
-                        //String stickerColor = stickerConfig.getString(i).toLowerCase();
+    // Hands the image the editor staged to the export pipeline, returns where it will end up
+    @NonNull
+    private String startExport(@NonNull String exportId, @NonNull final ExportOptions export, @NonNull String stagedPath, @Nullable final String source) {
+        File staged = new File(stagedPath);
+        File target = new File(export.targetDir(ctx), staged.getName());
+
+        mExports.submit(exportId, staged, target, new ExportPipeline.Listener() {
+            @Nullable
+            @Override
+            public byte[] metadata(@NonNull String exportId) {
+                return sourceMetadata(export, source);
+            }
 
-                        ReadableMap transform = transformsConfig.getMap(i);
-                        String transform_id = transform.getString("id");
-                        Integer transform_width = transform.getInt("width");
-                        Integer transform_height = transform.getInt("height");
-                        String transform_label = transform.getString("label");
-                        Boolean transform_rotatable = transform.getBoolean("rotatable");
+            @Override
+            public void onProgress(@NonNull String exportId, long written, long total) {
+                WritableMap event = Arguments.createMap();
+                event.putString("exportId", exportId);
+                event.putDouble("written", written);
+                event.putDouble("total", total);
+                event.putDouble("progress", total > 0 ? (double) written / total : 1);
+                emit(exportProgressEvent, event);
+            }
 
-                        transforms.add(new CropAspectConfig(ctx.getResources().getIdentifier(transform_id, "string", ctx.getPackageName()), transform_width, transform_height));
+            @Override
+            public void onReady(@NonNull String exportId, @NonNull File file) {
+                if (!export.isPrivate()) {
+                    // Public exports show up in the gallery like before
+                    MediaScannerConnection.scanFile(ctx, new String[] { file.getAbsolutePath() }, null, null);
+                }
+                WritableMap event = Arguments.createMap();
+                event.putString("exportId", exportId);
+                event.putString("path", file.getAbsolutePath());
+                if (export.outputs != null) {
+                    // Still on the export thread, the next export waits for these
+                    try {
+                        event.putArray("outputs", toArray(export.outputs.render(mRenderer, file.getAbsolutePath(), file.getParentFile())));
+                    } catch (IOException | RuntimeException e) {
+                        Log.w(TAG, "Could not render outputs of " + file, e);
+                        event.putString("outputsError", String.valueOf(e.getMessage()));
                     }
                 }
+                emit(exportReadyEvent, event);
+            }
 
-                config.setAspects(transforms);
+            @Override
+            public void onFailed(@NonNull String exportId, @Nullable Exception error) {
+                WritableMap event = Arguments.createMap();
+                event.putString("exportId", exportId);
+                event.putBoolean("canceled", error == null);
+                event.putString("error", error != null ? error.getMessage() : null);
+                emit(exportFailedEvent, event);
             }
+        });
+        return target.getAbsolutePath();
+    }
 
+    // Resolves with the result and its smaller copies once they are written
+    private void renderOutputs(@NonNull final ExportOptions export, @NonNull final String resultPath, @Nullable final String shortCircuit,
+                               @Nullable final ResultInfo info, @NonNull final Promise promise) {
+        mDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = Metrics.shared().now();
+                try {
+                    WritableMap result = Arguments.createMap();
+                    result.putString("path", resultPath);
+                    result.putString("shortCircuit", shortCircuit);
+                    if (info != null) {
+                        info.writeTo(result);
+                    }
+                    result.putArray("outputs", toArray(export.outputs.render(mRenderer, resultPath, export.targetDir(ctx))));
+                    Metrics.shared().recordSince(Metrics.RENDER_OUTPUTS, start);
+                    promise.resolve(result);
+                } catch (IOException | RuntimeException e) {
+                    promise.reject(E_EXPORT_FAILED, e);
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private static WritableArray toArray(@NonNull List<ExportOutputs.Output> outputs) {
+        WritableArray array = Arguments.createArray();
+        for (ExportOutputs.Output output : outputs) {
+            WritableMap map = Arguments.createMap();
+            map.putString("name", output.name);
+            map.putString("path", output.path);
+            map.putInt("width", output.width);
+            map.putInt("height", output.height);
+            array.pushMap(map);
         }
+        return array;
+    }
 
-        return settingsList;
+    // Events of background work may arrive after the bridge is gone
+    private void emit(@NonNull String eventName, @NonNull WritableMap event) {
+        if (ctx.hasActiveCatalystInstance()) {
+            ctx.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, event);
+        }
+    }
+
+    // Streams the result of a queued session to JS and opens the next image right away
+    private void onQueueResult(Activity activity, EditorQueue queue, @Nullable String resultPath, @Nullable String exportId, @Nullable String shortCircuit,
+                               @Nullable ResultInfo info) {
+        int index = queue.index++;
+        queue.results.set(index, resultPath);
+
+        WritableMap event = Arguments.createMap();
+        event.putString("queueId", queue.id);
+        event.putInt("index", index);
+        event.putString("path", queue.paths.get(index));
+        event.putString("resultPath", resultPath);
+        event.putBoolean("canceled", resultPath == null);
+        if (exportId != null) {
+            event.putString("exportId", exportId);
+        }
+        if (shortCircuit != null) {
+            event.putString("shortCircuit", shortCircuit);
+        }
+        if (info != null) {
+            WritableMap result = Arguments.createMap();
+            info.writeTo(result);
+            event.putMap("result", result);
+        }
+        event.putInt("total", queue.paths.size());
+        emit(queueResultEvent, event);
+
+        // Leaving an editor ends the whole queue
+        if (resultPath != null && queue.hasNext()) {
+            startSession(activity, queue.current(), queue.features, queue.options, queue.catalog, queue.export, null, queue);
+            return;
+        }
+
+        WritableArray results = Arguments.createArray();
+        for (String result : queue.results) {
+            results.pushString(result);
+        }
+        queue.promise.resolve(results);
+    }
+
+    private static boolean hasFeature(@Nullable ReadableArray features, String feature) {
+        if (features == null || features.size() == 0) {
+            return true;
+        }
+        for (int i = 0; i < features.size(); i++) {
+            if (feature.equals(features.getString(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -549,6 +918,24 @@ public class PESDKModule extends ReactContextBaseJavaModule {
         constants.put("backgroundColorMenuEditorKey", backgroundColorMenuEditorKey);
         constants.put("cameraRollAllowedKey", cameraRollAllowedKey);
         constants.put("showFiltersInCameraKey", showFiltersInCameraKey);
+        constants.put("exportDirectoryKey", exportDirectoryKey);
+        constants.put("exportFolderKey", exportFolderKey);
+        constants.put("exportPrefixKey", exportPrefixKey);
+        constants.put("exportFormatKey", exportFormatKey);
+        constants.put("exportQualityKey", exportQualityKey);
+        constants.put("exportAsyncKey", exportAsyncKey);
+        constants.put("outputsKey", outputsKey);
+        constants.put("savePolicyKey", savePolicyKey);
+        constants.put("richResultKey", richResultKey);
+        constants.put("proxyKey", proxyKey);
+        constants.put("exportMetadataKey", exportMetadataKey);
+        constants.put("catalogKey", catalogKey);
+        constants.put("batchProgressEvent", batchProgressEvent);
+        constants.put("queueResultEvent", queueResultEvent);
+        constants.put("exportProgressEvent", exportProgressEvent);
+        constants.put("exportReadyEvent", exportReadyEvent);
+        constants.put("exportFailedEvent", exportFailedEvent);
+        constants.put("editorEvent", EditorEventBridge.EVENT);
 
         return constants;
     }
@@ -558,13 +945,25 @@ public class PESDKModule extends ReactContextBaseJavaModule {
         if (getCurrentActivity() == null) {
            promise.reject(E_ACTIVITY_DOES_NOT_EXIST, "Activity does not exist");
         } else {
-            mPESDKPromise = promise;
+            CompiledCatalog catalog;
+            try {
+                long start = Metrics.shared().now();
+                catalog = resolveCatalog(custom);
+                Metrics.shared().recordSince(Metrics.RESOLVE_CATALOG, start);
+            } catch (IllegalArgumentException e) {
+                promise.reject(E_CATALOG_NOT_FOUND, e.getMessage());
+                return;
+            }
 
-            SettingsList settingsList = buildConfig(options, features, custom, image.toString());
+            ExportOptions export;
+            try {
+                export = ExportOptions.from(options);
+            } catch (IllegalArgumentException e) {
+                promise.reject(E_INVALID_OPTIONS, e.getMessage());
+                return;
+            }
 
-            new PhotoEditorBuilder(getCurrentActivity())
-                    .setSettingsList(settingsList)
-                    .startActivityForResult(getCurrentActivity(), RESULT_CODE_PESDK);
+            startSession(getCurrentActivity(), image, features, options, catalog, export, promise, null);
         }
     }
 
@@ -573,14 +972,316 @@ public class PESDKModule extends ReactContextBaseJavaModule {
         if (getCurrentActivity() == null) {
             promise.reject(E_ACTIVITY_DOES_NOT_EXIST, "Activity does not exist");
         } else {
-            mPESDKPromise = promise;
+            CompiledCatalog catalog;
+            try {
+                long start = Metrics.shared().now();
+                catalog = resolveCatalog(custom);
+                Metrics.shared().recordSince(Metrics.RESOLVE_CATALOG, start);
+            } catch (IllegalArgumentException e) {
+                promise.reject(E_CATALOG_NOT_FOUND, e.getMessage());
+                return;
+            }
 
-            SettingsList settingsList = buildConfig(options, features, custom, null);
+            ExportOptions export;
+            try {
+                export = ExportOptions.from(options);
+            } catch (IllegalArgumentException e) {
+                promise.reject(E_INVALID_OPTIONS, e.getMessage());
+                return;
+            }
 
-            new CameraPreviewBuilder(getCurrentActivity())
-                    .setSettingsList(settingsList)
-                    .startActivityForResult(getCurrentActivity(), RESULT_CODE_PESDK);
+            startSession(getCurrentActivity(), null, features, options, catalog, export, promise, null);
+        }
+    }
+
+    @ReactMethod
+    public void openEditorQueue(@NonNull ReadableArray images, ReadableArray features, ReadableMap options, ReadableMap custom, final Promise promise) {
+        if (getCurrentActivity() == null) {
+            promise.reject(E_ACTIVITY_DOES_NOT_EXIST, "Activity does not exist");
+            return;
+        }
+
+        // Compiled once for all sessions of the queue
+        CompiledCatalog catalog;
+        try {
+            long start = Metrics.shared().now();
+            catalog = resolveCatalog(custom);
+            Metrics.shared().recordSince(Metrics.RESOLVE_CATALOG, start);
+        } catch (IllegalArgumentException e) {
+            promise.reject(E_CATALOG_NOT_FOUND, e.getMessage());
+            return;
+        }
+
+        ExportOptions export;
+        try {
+            export = ExportOptions.from(options);
+        } catch (IllegalArgumentException e) {
+            promise.reject(E_INVALID_OPTIONS, e.getMessage());
+            return;
+        }
+        if (export.outputs != null) {
+            promise.reject(E_INVALID_OPTIONS, "outputs are not supported by openEditorQueue");
+            return;
+        }
+
+        List<String> paths = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            paths.add(images.getString(i));
+        }
+        if (paths.isEmpty()) {
+            promise.resolve(Arguments.createArray());
+            return;
+        }
+
+        EditorQueue queue = new EditorQueue(SessionTokens.newToken(), paths, features, options, catalog, export, promise);
+        startSession(getCurrentActivity(), queue.current(), features, options, catalog, export, null, queue);
+    }
+
+    // Resolves false if the export is unknown or already being moved into place
+    @ReactMethod
+    public void cancelExport(@NonNull String exportId, final Promise promise) {
+        promise.resolve(mExports.cancel(exportId));
+    }
+
+    // Forward editor state changes to JS, at most maxPerSecond batches a second
+    @ReactMethod
+    public void startEditorEvents(int maxPerSecond) {
+        EditorEventBridge.start(ctx, maxPerSecond);
+    }
+
+    @ReactMethod
+    public void stopEditorEvents() {
+        EditorEventBridge.stop();
+    }
+
+    // Timings in ms
+    @ReactMethod
+    public void getMetrics(final Promise promise) {
+        WritableMap timings = Arguments.createMap();
+        for (Map.Entry<String, LatencyHistogram> entry : Metrics.shared().histograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            WritableMap timing = Arguments.createMap();
+            timing.putDouble("count", histogram.count());
+            timing.putDouble("p50", Metrics.millis(histogram.percentile(50)));
+            timing.putDouble("p95", Metrics.millis(histogram.percentile(95)));
+            timing.putDouble("p99", Metrics.millis(histogram.percentile(99)));
+            timing.putDouble("min", Metrics.millis(histogram.min()));
+            timing.putDouble("max", Metrics.millis(histogram.max()));
+            timing.putDouble("mean", Metrics.millis(histogram.mean()));
+            timings.putMap(entry.getKey(), timing);
+        }
+
+        WritableMap counters = Arguments.createMap();
+        for (Map.Entry<String, Long> entry : Metrics.shared().counters().entrySet()) {
+            counters.putDouble(entry.getKey(), entry.getValue());
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putMap("timings", timings);
+        result.putMap("counters", counters);
+        promise.resolve(result);
+    }
+
+    @ReactMethod
+    public void resetMetrics() {
+        Metrics.shared().reset();
+    }
+
+    // Dump the metrics to logcat every intervalSeconds, 0 turns it off
+    @ReactMethod
+    public void setMetricsLogInterval(int intervalSeconds) {
+        mMetricsHandler.removeCallbacks(mMetricsLogTask);
+        mMetricsLogIntervalMs = intervalSeconds * 1000L;
+        if (mMetricsLogIntervalMs > 0) {
+            mMetricsHandler.postDelayed(mMetricsLogTask, mMetricsLogIntervalMs);
+        }
+    }
+
+    @ReactMethod
+    public void registerCatalog(@NonNull String id, @NonNull ReadableMap custom, final Promise promise) {
+        CompiledCatalog catalog = CompiledCatalog.compile(mAssets, mThumbnails, custom);
+        mCatalogSources.put(id, custom.toHashMap());
+        mCatalogs.put(id, catalog);
+
+        WritableMap result = Arguments.createMap();
+        result.putString("id", id);
+        result.putDouble("compileTime", catalog.compileTimeMs);
+        promise.resolve(result);
+    }
+
+    @ReactMethod
+    public void unregisterCatalog(@NonNull String id, final Promise promise) {
+        mCatalogSources.remove(id);
+        promise.resolve(mCatalogs.remove(id) != null);
+    }
+
+    @ReactMethod
+    public void clearCatalogs() {
+        mCatalogs.clear();
+        mCatalogSources.clear();
+    }
+
+    @ReactMethod
+    public void preload(@Nullable ReadableArray features, @Nullable final ReadableMap custom, final Promise promise) {
+        final boolean filters = hasFeature(features, filterTool);
+        final boolean stickers = hasFeature(features, stickerTool);
+        final boolean overlays = hasFeature(features, overlayTool);
+
+        mPreloadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long coldStart = SystemClock.elapsedRealtime();
+
+                    CompiledCatalog catalog = resolveCatalog(custom);
+
+                    int decoded = 0;
+                    if (catalog != null && stickers) {
+                        decoded += mThumbnails.warm(catalog.stickerThumbnails, mDecodeExecutor);
+                    }
+                    if (catalog != null && overlays) {
+                        decoded += mThumbnails.warm(catalog.overlayThumbnails, mDecodeExecutor);
+                    }
+                    // Its thumbnail sources were created before the pre-scaled copies existed
+                    if (decoded > 0) {
+                        catalog = recompile(custom, catalog);
+                    }
+
+                    if (catalog != null && custom != null && !custom.hasKey(catalogKey)) {
+                        mPreloadedCustom = custom.toHashMap();
+                        mPreloadedCatalog = catalog;
+                    }
+
+                    // Compile (or map) the LUTs for headless rendering
+                    int luts = 0;
+                    if (catalog != null && filters) {
+                        for (String filterId : catalog.filterIds) {
+                            try {
+                                mLuts.get(filterId);
+                                luts++;
+                            } catch (IOException e) {
+                                Log.w(TAG, "Could not preload LUT " + filterId, e);
+                            }
+                        }
+                    }
+
+                    long coldTime = SystemClock.elapsedRealtime() - coldStart;
+
+                    // What the next open pays now that everything is warm
+                    long warmStart = SystemClock.elapsedRealtime();
+                    resolveCatalog(custom);
+                    long warmTime = SystemClock.elapsedRealtime() - warmStart;
+
+                    WritableMap result = Arguments.createMap();
+                    result.putDouble("coldTime", coldTime);
+                    result.putDouble("warmTime", warmTime);
+                    result.putDouble("compileTime", catalog != null ? catalog.compileTimeMs : 0);
+                    result.putInt("decodedThumbnails", decoded);
+                    result.putInt("luts", luts);
+                    promise.resolve(result);
+                } catch (IllegalArgumentException e) {
+                    promise.reject(E_CATALOG_NOT_FOUND, e.getMessage());
+                } catch (Exception e) {
+                    promise.reject(E_PRELOAD_FAILED, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getThumbnailCacheStats(final Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("hits", mThumbnails.hits());
+        stats.putInt("misses", mThumbnails.misses());
+        stats.putInt("written", mThumbnails.written());
+        stats.putInt("evictions", mThumbnails.evictions());
+        stats.putDouble("size", mThumbnails.size());
+        stats.putDouble("maxSize", ThumbnailCache.MAX_DISK_BYTES);
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void renderBatch(@NonNull ReadableArray paths, @NonNull ReadableMap recipe, @Nullable ReadableMap options, final Promise promise) {
+        EditRecipe editRecipe;
+        try {
+            editRecipe = EditRecipe.from(recipe);
+        } catch (IllegalArgumentException e) {
+            promise.reject(E_INVALID_RECIPE, e.getMessage());
+            return;
         }
+
+        final String batchId = SessionTokens.newToken();
+        final AtomicInteger cached = new AtomicInteger();
+        final int total = paths.size();
+        List<String> inputs = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            inputs.add(paths.getString(i));
+        }
+
+        ExifAllowList metadata;
+        try {
+            metadata = ExportOptions.allowList(options, "metadata");
+        } catch (IllegalArgumentException e) {
+            promise.reject(E_INVALID_OPTIONS, e.getMessage());
+            return;
+        }
+
+        BatchRenderer.Options batchOptions = new BatchRenderer.Options(
+                options != null && options.hasKey("outputDir") ? new File(options.getString("outputDir")) : new File(ctx.getCacheDir(), "pesdk-batch/" + batchId),
+                options != null && options.hasKey("prefix") ? options.getString("prefix") : "render_",
+                options != null && options.hasKey("quality") ? options.getInt("quality") : 90,
+                options != null && options.hasKey("maxEdge") ? options.getInt("maxEdge") : 0,
+                options != null && options.hasKey("memoryBudget") ? (long) options.getDouble("memoryBudget") : Runtime.getRuntime().maxMemory() / 4,
+                options != null && options.hasKey("bandHeight") ? options.getInt("bandHeight") : 0,
+                metadata
+        );
+
+        new BatchRenderer(mRenderer, mRenderCache).start(inputs, editRecipe, batchOptions, new BatchRenderer.Listener() {
+            @Override
+            public void onImage(int index, @NonNull String input, @Nullable RecipeRenderer.Result result, @Nullable Exception error, int completed) {
+                WritableMap event = Arguments.createMap();
+                event.putString("batchId", batchId);
+                event.putInt("index", index);
+                event.putString("path", input);
+                if (result != null) {
+                    event.putString("outputPath", result.path);
+                    event.putInt("width", result.width);
+                    event.putInt("height", result.height);
+                    if (result.cached) {
+                        cached.incrementAndGet();
+                        event.putString("shortCircuit", "cache");
+                    }
+                } else {
+                    Log.w(TAG, "Could not render " + input, error);
+                    event.putString("error", String.valueOf(error != null ? error.getMessage() : null));
+                }
+                event.putInt("completed", completed);
+                event.putInt("total", total);
+                emit(batchProgressEvent, event);
+            }
+
+            @Override
+            public void onDone(int succeeded, int failed, long durationMs) {
+                WritableMap result = Arguments.createMap();
+                result.putString("batchId", batchId);
+                result.putInt("succeeded", succeeded);
+                result.putInt("failed", failed);
+                result.putInt("cached", cached.get());
+                result.putDouble("duration", durationMs);
+                result.putDouble("imagesPerMinute", durationMs > 0 ? succeeded * 60000.0 / durationMs : 0);
+                Log.d(TAG, "Batch " + batchId + " rendered " + succeeded + " images in " + durationMs + "ms");
+                promise.resolve(result);
+            }
+        });
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        EditorEventBridge.stop();
+        mMetricsHandler.removeCallbacks(mMetricsLogTask);
+        mPreloadExecutor.shutdownNow();
+        mDecodeExecutor.shutdownNow();
+        mExports.shutdown();
     }
 
 }
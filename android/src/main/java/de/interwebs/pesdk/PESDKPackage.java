@@ -9,6 +9,8 @@
 
 package de.interwebs.pesdk;
 
+import android.support.annotation.Nullable;
+
 import com.facebook.react.ReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -20,10 +22,21 @@ import java.util.List;
 import static java.util.Collections.*;
 
 public class PESDKPackage implements ReactPackage {
+    private final AssetRegistry assets;
+
+    public PESDKPackage() {
+        this(null);
+    }
+
+    // Pass the registry generated by pesdk-catalog.gradle to skip runtime resource lookups
+    public PESDKPackage(@Nullable AssetRegistry assets) {
+        this.assets = assets;
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
-        modules.add(new PESDKModule(reactContext));
+        modules.add(new PESDKModule(reactContext, assets));
 
         return modules;
     }
@@ -0,0 +1,121 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+
+import de.interwebs.pesdk.tile.Orientation;
+
+/**
+ * A downsampled, upright copy of a large source image that the editor works on instead of the
+ * source, so its heap use depends on the screen rather than the photo.
+ *
+ * Proxies are kept in the cache by source path, size, modification time and max edge, opening
+ * the same photo again reuses its proxy. Only the most recently used ones are kept.
+ */
+final class ProxyImage {
+
+    private static final int QUALITY = 95;
+    // Each about a screen's worth of JPEG
+    private static final int MAX_PROXIES = 4;
+
+    final String source;
+    final String path;
+
+    private ProxyImage(String source, String path) {
+        this.source = source;
+        this.path = path;
+    }
+
+    /**
+     * Proxy of the source, null if the source isn't larger than maxEdge anyway.
+     */
+    @Nullable
+    static ProxyImage create(@NonNull Context context, @NonNull RecipeRenderer renderer, @NonNull String source, int maxEdge) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        BitmapFactory.Options bounds = ImageInput.bounds(resolver, source);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Could not read image " + source);
+        }
+        if (Math.max(bounds.outWidth, bounds.outHeight) <= maxEdge) {
+            return null;
+        }
+
+        Orientation orientation = Orientation.exif(ImageInput.exifOrientation(resolver, source));
+
+        // Content has no modification time to go by, its URI and size have to do
+        String key;
+        if (ImageInput.isContent(source)) {
+            key = source + "|" + ImageInput.length(resolver, source) + "|" + maxEdge;
+        } else {
+            File file = new File(RecipeRenderer.path(source));
+            key = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified() + "|" + maxEdge;
+        }
+        File dir = new File(context.getCacheDir(), "pesdk-proxy");
+        File proxy = new File(dir, UUID.nameUUIDFromBytes(key.getBytes(Charset.forName("UTF-8"))) + ".jpg");
+        if (proxy.isFile()) {
+            // Most recently used is kept longest, see prune
+            proxy.setLastModified(System.currentTimeMillis());
+        } else {
+            // Upright in the same pass that scales down
+            Bitmap bitmap = renderer.decode(source, maxEdge, orientation);
+            try {
+                // Written next to the proxy first, a proxy that exists is complete
+                File partial = new File(proxy.getPath() + ".partial");
+                renderer.encode(bitmap, partial, QUALITY);
+                if (!partial.renameTo(proxy)) {
+                    throw new IOException("Could not move proxy to " + proxy);
+                }
+            } finally {
+                bitmap.recycle();
+            }
+            prune(dir, proxy);
+        }
+        return new ProxyImage(source, proxy.getPath());
+    }
+
+    // Deletes all but the MAX_PROXIES most recently used proxies, never keep
+    private static void prune(@NonNull File dir, @NonNull File keep) {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= MAX_PROXIES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = b.lastModified() - a.lastModified();
+                return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+            }
+        });
+        for (int i = MAX_PROXIES; i < files.length; i++) {
+            if (!files[i].equals(keep)) {
+                files[i].delete();
+            }
+        }
+    }
+
+    // What is replayed onto the source: the filter, the renderer turns it upright like the proxy
+    @NonNull
+    static EditRecipe replayRecipe(@Nullable String filterId, float filterIntensity) {
+        return new EditRecipe(filterId, filterIntensity, null, 0, null, CompiledCatalog.blendMode("normal"), 0);
+    }
+}
@@ -0,0 +1,579 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.interwebs.pesdk.exif.ExifAllowList;
+import de.interwebs.pesdk.exif.ExifData;
+import de.interwebs.pesdk.exif.ExifOutputStream;
+import de.interwebs.pesdk.exif.ExifWriter;
+import de.interwebs.pesdk.lut.Lut3D;
+import de.interwebs.pesdk.tile.BandRenderer;
+import de.interwebs.pesdk.tile.BandSource;
+import de.interwebs.pesdk.tile.BandStage;
+import de.interwebs.pesdk.tile.JpegWriter;
+import de.interwebs.pesdk.tile.LutStage;
+import de.interwebs.pesdk.tile.Orientation;
+import ly.img.android.sdk.models.constant.BlendMode;
+
+/**
+ * Renders an EditRecipe onto a single image without the editor UI:
+ * decode, crop/rotate, filter, overlay, encode. Inputs are file paths or URIs, see ImageInput.
+ *
+ * Every path turns the input upright from its EXIF orientation as it decodes, the recipe's crop
+ * and rotation apply to the image as it is shown, not as it is stored.
+ *
+ * renderTiled does the same at full resolution in horizontal bands, for images too large to
+ * hold decoded: regions of the source are decoded per band and encoded as they are done.
+ * Recipes that only crop and rotate skip the full decode as well, see renderRegion.
+ */
+final class RecipeRenderer {
+
+    static final class Result {
+        final String path;
+        final int width;
+        final int height;
+        // Returned by the RenderCache instead of rendered
+        final boolean cached;
+
+        Result(String path, int width, int height) {
+            this(path, width, height, false);
+        }
+
+        Result(String path, int width, int height, boolean cached) {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+            this.cached = cached;
+        }
+    }
+
+    // Band height for images that don't fit the memory budget whole
+    static final int DEFAULT_BAND_HEIGHT = 256;
+
+    private final Resources res;
+    private final ContentResolver resolver;
+    private final AssetRegistry assets;
+    private final LutCache luts;
+
+    RecipeRenderer(@NonNull Resources res, @NonNull ContentResolver resolver, @NonNull AssetRegistry assets, @NonNull LutCache luts) {
+        this.res = res;
+        this.resolver = resolver;
+        this.assets = assets;
+        this.luts = luts;
+    }
+
+    @NonNull
+    Result render(@NonNull String input, @NonNull File output, @NonNull EditRecipe recipe, int maxEdge, int quality) throws IOException {
+        return render(input, output, recipe, maxEdge, quality, null);
+    }
+
+    // metadata is an APP1 segment written into the output, see metadata()
+    @NonNull
+    Result render(@NonNull String input, @NonNull File output, @NonNull EditRecipe recipe, int maxEdge, int quality, @Nullable byte[] metadata) throws IOException {
+        if (recipe.transformOnly()) {
+            return renderRegion(input, output, recipe, maxEdge, quality, metadata);
+        }
+
+        Bitmap bitmap = decode(input, maxEdge, ImageInput.orientation(resolver, input));
+        try {
+            bitmap = transform(bitmap, recipe);
+            applyFilter(bitmap, recipe);
+            applyOverlay(bitmap, recipe);
+            encode(bitmap, output, quality, metadata);
+            return new Result(output.getPath(), bitmap.getWidth(), bitmap.getHeight());
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Crop and rotation without decoding the rest of the source: only the crop is decoded, at
+     * the sample size decode would use for the whole image. The result has the size render would
+     * give it, the crop of the source scaled down to maxEdge.
+     *
+     * The crop is mapped onto the stored pixels through the EXIF orientation and the decoded
+     * region is turned by both in one go.
+     */
+    @NonNull
+    Result renderRegion(@NonNull String input, @NonNull File output, @NonNull EditRecipe recipe, int maxEdge, int quality, @Nullable byte[] metadata) throws IOException {
+        Orientation orientation = ImageInput.orientation(resolver, input).rotate(recipe.rotation);
+        BitmapRegionDecoder decoder = ImageInput.regionDecoder(resolver, input);
+        Bitmap bitmap;
+        Rect crop;
+        float scale;
+        try {
+            int width = decoder.getWidth();
+            int height = decoder.getHeight();
+            crop = cropRect(recipe.crop, orientation, width, height);
+            int edge = Math.max(width, height);
+            scale = maxEdge > 0 && edge > maxEdge ? (float) maxEdge / edge : 1f;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inSampleSize = sampleSize(edge, maxEdge);
+            bitmap = decoder.decodeRegion(crop, options);
+            if (bitmap == null) {
+                throw new IOException("Could not decode region " + crop + " of " + input);
+            }
+        } finally {
+            decoder.recycle();
+        }
+
+        try {
+            // inSampleSize only gets close, scale down the rest of the way
+            int targetWidth = Math.max(1, Math.round(crop.width() * scale));
+            int targetHeight = Math.max(1, Math.round(crop.height() * scale));
+            if (bitmap.getWidth() != targetWidth || bitmap.getHeight() != targetHeight) {
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+                if (scaled != bitmap) {
+                    bitmap.recycle();
+                    bitmap = scaled;
+                }
+            }
+
+            if (!orientation.isNormal()) {
+                Matrix matrix = new Matrix();
+                matrix.setScale(orientation.mirrored ? -1 : 1, 1);
+                matrix.postRotate(orientation.rotation);
+                Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, false);
+                if (rotated != bitmap) {
+                    bitmap.recycle();
+                    bitmap = rotated;
+                }
+            }
+
+            encode(bitmap, output, quality, metadata);
+            return new Result(output.getPath(), bitmap.getWidth(), bitmap.getHeight());
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Full resolution render that holds bandHeight rows at a time rather than the whole image.
+     * The overlay is decoded at the size render would decode it at, i.e. the asset's own size.
+     * Bands are read from the stored pixels and turned by the EXIF orientation and the recipe's
+     * rotation together, like renderRegion.
+     */
+    @NonNull
+    Result renderTiled(@NonNull String input, @NonNull File output, @NonNull final EditRecipe recipe, int bandHeight, int quality,
+                       @Nullable byte[] metadata) throws IOException {
+        final Orientation orientation = ImageInput.orientation(resolver, input).rotate(recipe.rotation);
+        final BitmapRegionDecoder decoder = ImageInput.regionDecoder(resolver, input);
+
+        Bitmap overlay = null;
+        OverlayStage overlayStage = null;
+        try {
+            final Rect crop = cropRect(recipe.crop, orientation, decoder.getWidth(), decoder.getHeight());
+            final int width = orientation.swapsAxes() ? crop.height() : crop.width();
+            final int height = orientation.swapsAxes() ? crop.width() : crop.height();
+
+            List<BandStage> stages = new ArrayList<>(2);
+            if (recipe.filterId != null && recipe.filterIntensity > 0) {
+                stages.add(new LutStage(luts.get(recipe.filterId), Math.min(256, Math.round(recipe.filterIntensity * 256))));
+            }
+            overlay = decodeOverlay(recipe, Math.max(width, height));
+            if (overlay != null) {
+                overlayStage = new OverlayStage(overlay, overlayPaint(recipe), width, height, bandHeight);
+                stages.add(overlayStage);
+            }
+
+            File dir = output.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            OutputStream out = new BufferedOutputStream(metadata != null ? new ExifOutputStream(new FileOutputStream(output), metadata) : new FileOutputStream(output));
+            try {
+                JpegWriter writer = new JpegWriter(out, width, height, quality);
+                BandRenderer.render(width, height, bandHeight, new BandSource() {
+                    @Override
+                    public void read(int top, int rows, int[] pixels) throws IOException {
+                        readBand(decoder, crop, orientation, width, top, rows, pixels);
+                    }
+                }, stages, writer);
+                writer.finish();
+            } finally {
+                out.close();
+            }
+            return new Result(output.getPath(), width, height);
+        } finally {
+            decoder.recycle();
+            if (overlayStage != null) {
+                overlayStage.recycle();
+            }
+            if (overlay != null) {
+                overlay.recycle();
+            }
+        }
+    }
+
+    // Output rows [top, top + rows) cropped and oriented from the matching region of the source
+    private static void readBand(BitmapRegionDecoder decoder, Rect crop, Orientation orientation, int width, int top, int rows, int[] pixels) throws IOException {
+        int[] relative = orientation.region(crop.width(), crop.height(), top, rows);
+        Rect region = new Rect(relative[0], relative[1], relative[2], relative[3]);
+        region.offset(crop.left, crop.top);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = decoder.decodeRegion(region, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode region " + region);
+        }
+
+        int regionWidth = region.width();
+        int regionHeight = region.height();
+        int[] source = new int[regionWidth * regionHeight];
+        try {
+            bitmap.getPixels(source, 0, regionWidth, 0, 0, regionWidth, regionHeight);
+        } finally {
+            bitmap.recycle();
+        }
+
+        // Same mapping as transform's matrix, pixel for pixel
+        orientation.copy(source, regionWidth, regionHeight, pixels, width, rows);
+    }
+
+    // Draws the overlay, scaled to the whole image, onto one band at a time
+    private static final class OverlayStage implements BandStage {
+
+        private final Bitmap overlay;
+        private final Paint paint;
+        private final Rect bounds;
+        private final Bitmap band;
+        private final Canvas canvas;
+
+        OverlayStage(Bitmap overlay, Paint paint, int width, int height, int bandHeight) {
+            this.overlay = overlay;
+            this.paint = paint;
+            this.bounds = new Rect(0, 0, width, height);
+            this.band = Bitmap.createBitmap(width, Math.min(bandHeight, height), Bitmap.Config.ARGB_8888);
+            this.canvas = new Canvas(band);
+        }
+
+        @Override
+        public int overlap() {
+            return 0;
+        }
+
+        @Override
+        public void apply(int[] pixels, int width, int top, int rows) {
+            band.setPixels(pixels, 0, width, 0, 0, width, rows);
+            canvas.save();
+            canvas.clipRect(0, 0, width, rows);
+            canvas.translate(0, -top);
+            canvas.drawBitmap(overlay, null, bounds, paint);
+            canvas.restore();
+            band.getPixels(pixels, 0, width, 0, 0, width, rows);
+        }
+
+        // The band buffer, the overlay belongs to the caller
+        void recycle() {
+            band.recycle();
+        }
+    }
+
+    // Bytes a render of the given input needs at peak: source, transformed copy and filter buffer
+    long estimateBytes(@NonNull String input, int maxEdge) {
+        BitmapFactory.Options options = bounds(input);
+        int sampleSize = sampleSize(options, maxEdge);
+        return 3L * (options.outWidth / sampleSize) * (options.outHeight / sampleSize) * 4;
+    }
+
+    // Same for the given recipe, a crop and rotation only needs the crop and its rotated copy
+    long estimateBytes(@NonNull String input, @NonNull EditRecipe recipe, int maxEdge) {
+        if (!recipe.transformOnly()) {
+            return estimateBytes(input, maxEdge);
+        }
+        BitmapFactory.Options options = bounds(input);
+        int sampleSize = sampleSize(options, maxEdge);
+        // Orientation and rotation move the crop around, not its share of the image
+        float share = recipe.crop != null ? recipe.crop.width() * recipe.crop.height() : 1f;
+        return (long) (2.0 * share * (options.outWidth / sampleSize) * (options.outHeight / sampleSize) * 4);
+    }
+
+    // Same for renderTiled: decoded region, its pixels and the band buffer, each about a band
+    long estimateTiledBytes(@NonNull String input, int bandHeight) {
+        BitmapFactory.Options options = bounds(input);
+        return 3L * Math.max(options.outWidth, options.outHeight) * bandHeight * 4;
+    }
+
+    // Decodes upright from the input's EXIF orientation
+    @NonNull
+    Bitmap decode(@NonNull String input, int maxEdge) throws IOException {
+        return decode(input, maxEdge, ImageInput.orientation(resolver, input));
+    }
+
+    /**
+     * Decodes scaled down to maxEdge and turned by orientation, e.g. upright from the EXIF
+     * orientation. Whatever inSampleSize leaves of the scaling is done in the same pass as the
+     * rotation.
+     */
+    @NonNull
+    Bitmap decode(@NonNull String input, int maxEdge, @NonNull Orientation orientation) throws IOException {
+        BitmapFactory.Options options = bounds(input);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Could not read image " + input);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inSampleSize = sampleSize(options, maxEdge);
+
+        Bitmap bitmap = ImageInput.decode(resolver, input, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode image " + input);
+        }
+
+        // inSampleSize only gets close, scale down the rest of the way
+        int edge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        float scale = maxEdge > 0 && edge > maxEdge ? (float) maxEdge / edge : 1f;
+        if (scale < 1f || !orientation.isNormal()) {
+            Bitmap transformed;
+            if (orientation.isNormal()) {
+                transformed = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)), Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            } else {
+                Matrix matrix = new Matrix();
+                matrix.setScale(orientation.mirrored ? -scale : scale, scale);
+                matrix.postRotate(orientation.rotation);
+                transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            }
+            if (transformed != bitmap) {
+                bitmap.recycle();
+                bitmap = transformed.isMutable() ? transformed : copyMutable(transformed);
+            }
+        }
+        return bitmap;
+    }
+
+    // Crop and rotate into a new bitmap, recycles the source if it had to be replaced
+    @NonNull
+    Bitmap transform(@NonNull Bitmap source, @NonNull EditRecipe recipe) {
+        if (!recipe.hasTransform()) {
+            return source;
+        }
+
+        Rect crop = cropRect(recipe.crop, Orientation.NORMAL.rotate(recipe.rotation), source.getWidth(), source.getHeight());
+        boolean swap = recipe.rotation % 180 != 0;
+        int width = swap ? crop.height() : crop.width();
+        int height = swap ? crop.width() : crop.height();
+
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(-crop.left, -crop.top);
+        matrix.postRotate(recipe.rotation);
+        switch (recipe.rotation) {
+            case 90:
+                matrix.postTranslate(crop.height(), 0);
+                break;
+            case 180:
+                matrix.postTranslate(crop.width(), crop.height());
+                break;
+            case 270:
+                matrix.postTranslate(0, crop.width());
+                break;
+        }
+
+        Bitmap target = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(target).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        source.recycle();
+        return target;
+    }
+
+    // A crop of the oriented image in pixels of the width x height image before orientation, null crops nothing
+    @NonNull
+    private static Rect cropRect(@Nullable RectF crop, @NonNull Orientation orientation, int width, int height) {
+        float[] relative = crop != null ? orientation.sourceRect(crop.left, crop.top, crop.right, crop.bottom) : new float[]{0, 0, 1, 1};
+        Rect rect = new Rect(
+                Math.round(relative[0] * width),
+                Math.round(relative[1] * height),
+                Math.round(relative[2] * width),
+                Math.round(relative[3] * height)
+        );
+        if (rect.isEmpty()) {
+            throw new IllegalArgumentException("Crop is empty at this image size");
+        }
+        return rect;
+    }
+
+    void applyFilter(@NonNull Bitmap bitmap, @NonNull EditRecipe recipe) throws IOException {
+        if (recipe.filterId == null || recipe.filterIntensity <= 0) {
+            return;
+        }
+
+        Lut3D lut = luts.get(recipe.filterId);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        lut.apply(pixels, 0, pixels.length, Math.min(256, Math.round(recipe.filterIntensity * 256)));
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    void applyOverlay(@NonNull Bitmap bitmap, @NonNull EditRecipe recipe) throws IOException {
+        Bitmap overlay = decodeOverlay(recipe, Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        if (overlay == null) {
+            return;
+        }
+
+        try {
+            new Canvas(bitmap).drawBitmap(overlay, null, new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight()), overlayPaint(recipe));
+        } finally {
+            overlay.recycle();
+        }
+    }
+
+    // Overlay sampled down to no less than edge, null if the recipe has none
+    @Nullable
+    private Bitmap decodeOverlay(@NonNull EditRecipe recipe, int edge) throws IOException {
+        if (recipe.overlayId == null || recipe.overlayIntensity <= 0) {
+            return null;
+        }
+
+        int resId = assets.drawable(recipe.overlayId);
+        if (resId == 0) {
+            throw new IOException("No drawable for overlay " + recipe.overlayId);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(res, resId, options);
+        options.inJustDecodeBounds = false;
+        options.inScaled = false;
+        options.inSampleSize = ThumbnailCache.sampleSize(options.outWidth, options.outHeight, edge);
+
+        Bitmap overlay = BitmapFactory.decodeResource(res, resId, options);
+        if (overlay == null) {
+            throw new IOException("Could not decode overlay " + recipe.overlayId);
+        }
+        return overlay;
+    }
+
+    @NonNull
+    private static Paint overlayPaint(@NonNull EditRecipe recipe) {
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        paint.setAlpha(Math.round(Math.min(1f, recipe.overlayIntensity) * 255));
+        PorterDuff.Mode mode = porterDuffMode(recipe.overlayBlendMode);
+        if (mode != null) {
+            paint.setXfermode(new PorterDuffXfermode(mode));
+        }
+        return paint;
+    }
+
+    // Closest canvas blend mode, null means normal (source over)
+    @Nullable
+    private static PorterDuff.Mode porterDuffMode(BlendMode blendMode) {
+        switch (blendMode) {
+            case MULTIPLY:
+            case COLOR_BURN:
+                return PorterDuff.Mode.MULTIPLY;
+            case SCREEN:
+                return PorterDuff.Mode.SCREEN;
+            case DARKEN:
+                return PorterDuff.Mode.DARKEN;
+            case LIGHTEN:
+                return PorterDuff.Mode.LIGHTEN;
+            case OVERLAY:
+            case HARD_LIGHT:
+            case SOFT_LIGHT:
+                return PorterDuff.Mode.OVERLAY;
+            default:
+                return null;
+        }
+    }
+
+    void encode(@NonNull Bitmap bitmap, @NonNull File output, int quality) throws IOException {
+        encode(bitmap, output, quality, null);
+    }
+
+    void encode(@NonNull Bitmap bitmap, @NonNull File output, int quality, @Nullable byte[] metadata) throws IOException {
+        File dir = output.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        // The metadata goes into the stream as it is encoded, not into the file afterwards
+        OutputStream out = new BufferedOutputStream(metadata != null ? new ExifOutputStream(new FileOutputStream(output), metadata) : new FileOutputStream(output));
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Could not encode " + output);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private BitmapFactory.Options bounds(String input) {
+        return ImageInput.bounds(resolver, input);
+    }
+
+    /**
+     * APP1 segment with the input's EXIF tags that the allow list lets through, null if there
+     * are none. Only the input's markers are read, not its image data.
+     */
+    @Nullable
+    byte[] metadata(@NonNull String input, @NonNull ExifAllowList allowList) throws IOException {
+        ExifData exif = ImageInput.exif(resolver, input);
+        return exif != null ? ExifWriter.segment(exif, allowList) : null;
+    }
+
+    // The input's bytes as they are, e.g. for hashing
+    @NonNull
+    InputStream open(@NonNull String input) throws IOException {
+        return ImageInput.open(resolver, input);
+    }
+
+    private static int sampleSize(BitmapFactory.Options bounds, int maxEdge) {
+        return sampleSize(Math.max(bounds.outWidth, bounds.outHeight), maxEdge);
+    }
+
+    private static int sampleSize(int edge, int maxEdge) {
+        int sampleSize = 1;
+        if (maxEdge > 0) {
+            while (edge / (sampleSize * 2) >= maxEdge) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    static String path(String input) {
+        return input.startsWith("file://") ? input.substring("file://".length()) : input;
+    }
+
+    private static Bitmap copyMutable(Bitmap bitmap) {
+        Bitmap copy = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        bitmap.recycle();
+        return copy;
+    }
+}
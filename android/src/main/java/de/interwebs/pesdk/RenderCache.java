@@ -0,0 +1,131 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.interwebs.pesdk.exif.ExifAllowList;
+
+/**
+ * Recent renders by the content of their input and the recipe, so rendering the same recipe onto
+ * the same image again returns the earlier output instead of decoding and encoding once more.
+ *
+ * The input is hashed rather than identified by its path, a file that was replaced under the same
+ * name is rendered again. Outputs that were deleted or written over in the meantime, e.g. by a
+ * later batch into the same folder, are dropped on lookup.
+ */
+final class RenderCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // A result and its output file as it was when the result was put
+    private static final class Entry {
+        final RecipeRenderer.Result result;
+        final long length;
+        final long modified;
+
+        Entry(RecipeRenderer.Result result, File output) {
+            this.result = result;
+            this.length = output.length();
+            this.modified = output.lastModified();
+        }
+
+        boolean isIntact() {
+            File output = new File(result.path);
+            return output.isFile() && output.length() == length && output.lastModified() == modified;
+        }
+    }
+
+    private final Map<String, Entry> results;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    RenderCache(final int maxEntries) {
+        this.results = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // SHA-1 over the input's bytes and everything that changes the output, closes in
+    @NonNull
+    static String key(@NonNull InputStream in, @NonNull EditRecipe recipe, int maxEdge, int quality, @Nullable ExifAllowList metadata) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        digest.update((recipe.key() + "|" + maxEdge + "|" + quality + "|" + metadata).getBytes(Charset.forName("UTF-8")));
+
+        StringBuilder key = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    @Nullable
+    synchronized RecipeRenderer.Result get(@NonNull String key) {
+        Entry entry = results.get(key);
+        if (entry != null && !entry.isIntact()) {
+            results.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new RecipeRenderer.Result(entry.result.path, entry.result.width, entry.result.height, true);
+    }
+
+    // Right after result was written, its file is remembered as it is now
+    synchronized void put(@NonNull String key, @NonNull RecipeRenderer.Result result) {
+        results.put(key, new Entry(result, new File(result.path)));
+    }
+
+    synchronized int hits() {
+        return hits;
+    }
+
+    synchronized int misses() {
+        return misses;
+    }
+
+    // Entries dropped because their output was deleted or written over
+    synchronized int evictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.interwebs.pesdk.lut.LutLayout;
+
+/**
+ * Default registry: asks the generated registry first and falls back to
+ * Resources.getIdentifier for names it doesn't know. Lookups are memoized per process.
+ */
+final class ResourceAssetRegistry implements AssetRegistry {
+
+    private final Context ctx;
+    @Nullable private final AssetRegistry generated;
+
+    private final Map<String, Integer> drawables = new ConcurrentHashMap<>();
+    private final Map<String, Integer> strings = new ConcurrentHashMap<>();
+
+    ResourceAssetRegistry(@NonNull Context ctx, @Nullable AssetRegistry generated) {
+        this.ctx = ctx.getApplicationContext();
+        this.generated = generated;
+    }
+
+    @Override
+    public int drawable(String name) {
+        if (generated != null) {
+            int id = generated.drawable(name);
+            if (id != 0) {
+                return id;
+            }
+        }
+        return lookup(drawables, name, "drawable");
+    }
+
+    @Override
+    public int string(String name) {
+        if (generated != null) {
+            int id = generated.string(name);
+            if (id != 0) {
+                return id;
+            }
+        }
+        return lookup(strings, name, "string");
+    }
+
+    @Override
+    public LutLayout lutLayout(String filterId) {
+        if (generated != null) {
+            LutLayout layout = generated.lutLayout(filterId);
+            if (layout != null) {
+                return layout;
+            }
+        }
+        return LutLayout.fromFilterId(filterId);
+    }
+
+    private int lookup(Map<String, Integer> cache, String name, String type) {
+        Integer id = cache.get(name);
+        if (id == null) {
+            id = ctx.getResources().getIdentifier(name, type, ctx.getPackageName());
+            cache.put(name, id);
+        }
+        return id;
+    }
+}
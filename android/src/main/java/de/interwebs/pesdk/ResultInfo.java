@@ -0,0 +1,99 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.ContentResolver;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+
+import de.interwebs.pesdk.metrics.Metrics;
+
+/**
+ * What callers would otherwise decode the result for: size, type and orientation, read from the
+ * file's header only, plus how long the export took and what was edited.
+ */
+final class ResultInfo {
+
+    private static final String TAG = "PESDK";
+
+    // How the result of a proxy session came about
+    static final String PROXY_REPLAYED = "replayed";
+    static final String PROXY_KEPT = "kept";
+
+    final int width;
+    final int height;
+    final long bytes;
+    @Nullable final String mimeType;
+    // Clockwise degrees from the EXIF orientation
+    final int orientation;
+    // -1 if unknown, e.g. nothing was exported
+    final long exportNanos;
+    @Nullable final EditSummary edits;
+    // PROXY_REPLAYED or PROXY_KEPT, null without a proxy
+    @Nullable final String proxy;
+
+    private ResultInfo(int width, int height, long bytes, @Nullable String mimeType, int orientation, long exportNanos, @Nullable EditSummary edits,
+                       @Nullable String proxy) {
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+        this.mimeType = mimeType;
+        this.orientation = orientation;
+        this.exportNanos = exportNanos;
+        this.edits = edits;
+        this.proxy = proxy;
+    }
+
+    @NonNull
+    static ResultInfo read(@NonNull ContentResolver resolver, @NonNull String path, long exportNanos, @Nullable EditSummary edits, @Nullable String proxy) {
+        BitmapFactory.Options bounds = ImageInput.bounds(resolver, path);
+
+        int orientation = 0;
+        try {
+            switch (ImageInput.exifOrientation(resolver, path)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    orientation = 90;
+                    break;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    orientation = 180;
+                    break;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    orientation = 270;
+                    break;
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "No EXIF in " + path, e);
+        }
+
+        return new ResultInfo(bounds.outWidth, bounds.outHeight, ImageInput.length(resolver, path), bounds.outMimeType, orientation, exportNanos, edits, proxy);
+    }
+
+    void writeTo(@NonNull WritableMap map) {
+        map.putInt("width", width);
+        map.putInt("height", height);
+        map.putDouble("size", bytes);
+        map.putString("mimeType", mimeType);
+        map.putInt("orientation", orientation);
+        map.putDouble("exportTime", exportNanos >= 0 ? Metrics.millis(exportNanos) : -1);
+        if (edits != null) {
+            map.putMap("edits", edits.toMap());
+        } else {
+            map.putNull("edits");
+        }
+        map.putString("proxy", proxy);
+    }
+}
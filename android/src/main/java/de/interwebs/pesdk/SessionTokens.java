@@ -0,0 +1,44 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Tokens that tie together what belongs to one editor session, export or batch.
+ *
+ * The tracker parcels the session token, which restored copies use to find the session's edit
+ * summary, aggregator and metrics in this process. The SettingsList itself still travels
+ * whole in the launch Intent, since the PESDK activity reads it from there.
+ */
+public final class SessionTokens {
+
+    private SessionTokens() {}
+
+    @NonNull
+    public static String newToken() {
+        return UUID.randomUUID().toString();
+    }
+
+    // Size in bytes the given object takes up inside an Intent
+    public static int parcelSize(@NonNull Parcelable parcelable) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(parcelable, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ly.img.android.sdk.decoder.ImageSource;
+
+/**
+ * Catalog thumbnails (sticker, overlay and category icons) pre-scaled to menu size on disk,
+ * shared by all editor sessions.
+ *
+ * The editor decodes thumbnails itself from the ImageSources it is given, so there is nothing
+ * to keep in memory here: sources point at the small copy once warm wrote it, at the full size
+ * resource until then.
+ *
+ * The disk tier is an LRU bounded in bytes, by modification time: handing out a copy touches it
+ * and warm evicts the least recently used ones past MAX_DISK_BYTES. Copies used since this cache
+ * was created are never evicted, compiled catalogs may point at them.
+ */
+final class ThumbnailCache {
+
+    // Thumbnails are shown at 64dp in the editor menus
+    private static final int THUMB_SIZE_DP = 64;
+    // A few hundred menu sized PNGs
+    static final long MAX_DISK_BYTES = 8 * 1024 * 1024;
+
+    private final Resources res;
+    private final int thumbSize;
+    private final File diskDir;
+    // Whole seconds, some filesystems don't keep more
+    private final long created = System.currentTimeMillis() / 1000 * 1000;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger evictions = new AtomicInteger();
+
+    ThumbnailCache(@NonNull Context context) {
+        this.res = context.getResources();
+        this.thumbSize = Math.round(THUMB_SIZE_DP * res.getDisplayMetrics().density);
+        this.diskDir = new File(CacheDirs.versioned(context, "pesdk-thumbs"), String.valueOf(thumbSize));
+    }
+
+    // Pre-scaled copy from the disk tier if there is one, the original resource otherwise
+    @NonNull
+    ImageSource source(int resId) {
+        File file = diskFile(resId);
+        if (file.exists()) {
+            hits.incrementAndGet();
+            file.setLastModified(System.currentTimeMillis());
+            return ImageSource.create(Uri.fromFile(file));
+        }
+        misses.incrementAndGet();
+        return ImageSource.create(resId);
+    }
+
+    // Write all given thumbnails that aren't on disk yet in parallel and trim, returns the number written
+    int warm(@NonNull int[] resIds, @NonNull ExecutorService pool) throws InterruptedException {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (final int resId : resIds) {
+            if (resId == 0 || diskFile(resId).exists()) {
+                continue;
+            }
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return load(resId);
+                }
+            });
+        }
+
+        int loaded = 0;
+        for (Future<Boolean> result : pool.invokeAll(tasks)) {
+            try {
+                if (result.get()) {
+                    loaded++;
+                }
+            } catch (ExecutionException ignored) {
+                // A broken thumbnail must not fail the whole preload
+            }
+        }
+        if (loaded > 0) {
+            trim();
+        }
+        return loaded;
+    }
+
+    // Deletes the least recently used copies until the disk tier fits MAX_DISK_BYTES
+    private synchronized void trim() {
+        File[] files = diskDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Taken once, source() may touch files while they are sorted
+        final Map<File, Long> modified = new HashMap<>();
+        long size = 0;
+        for (File file : files) {
+            modified.put(file, file.lastModified());
+            size += file.length();
+        }
+        if (size <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return modified.get(a).compareTo(modified.get(b));
+            }
+        });
+        for (File file : files) {
+            if (size <= MAX_DISK_BYTES || modified.get(file) >= created) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean load(int resId) {
+        Bitmap bitmap = decodeResource(resId);
+        if (bitmap == null) {
+            return false;
+        }
+        try {
+            boolean stored = writeToDisk(bitmap, diskFile(resId));
+            if (stored) {
+                written.incrementAndGet();
+            }
+            return stored;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeResource(int resId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(res, resId, options);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, thumbSize);
+
+        Bitmap bitmap = BitmapFactory.decodeResource(res, resId, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        // Scale down the rest of the way so the disk tier only holds menu sized thumbnails
+        float scale = (float) thumbSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale < 1f) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)), Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+        return bitmap;
+    }
+
+    // False if the thumbnail couldn't be stored, e.g. the cache dir is full
+    private boolean writeToDisk(Bitmap bitmap, File file) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) {
+            return false;
+        }
+
+        // Write to a temp file first so a crash never leaves a truncated thumbnail behind
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            tmp.delete();
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private File diskFile(int resId) {
+        return new File(diskDir, resId + ".png");
+    }
+
+    // Largest power of two that keeps both edges >= target
+    static int sampleSize(int width, int height, int target) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= target && height / (sampleSize * 2) >= target) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Sources that pointed at a pre-scaled copy
+    int hits() {
+        return hits.get();
+    }
+
+    // Sources that had to point at the full size resource
+    int misses() {
+        return misses.get();
+    }
+
+    int written() {
+        return written.get();
+    }
+
+    // Copies deleted to stay within MAX_DISK_BYTES
+    int evictions() {
+        return evictions.get();
+    }
+
+    // Bytes of the thumbnails on disk
+    long size() {
+        long size = 0;
+        File[] files = diskDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A single analytics hit, either a screen view (category is the screen name) or an event.
+ */
+public final class AnalyticsEvent {
+
+    public static final int SCREEN_VIEW = 0;
+    public static final int EVENT = 1;
+
+    public final int kind;
+    public final String category;
+    public final String action;
+    public final String label;
+    public final long value;
+    // When the hit happened, System.currentTimeMillis()
+    public final long time;
+
+    AnalyticsEvent(int kind, String category, String action, String label, long value, long time) {
+        this.kind = kind;
+        this.category = category != null ? category : "";
+        this.action = action != null ? action : "";
+        this.label = label != null ? label : "";
+        this.value = value;
+        this.time = time;
+    }
+
+    public static AnalyticsEvent screenView(String screenName) {
+        return new AnalyticsEvent(SCREEN_VIEW, screenName, null, null, 0, System.currentTimeMillis());
+    }
+
+    public static AnalyticsEvent event(String category, String action, String label, long value) {
+        return new AnalyticsEvent(EVENT, category, action, label, value, System.currentTimeMillis());
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(kind);
+        out.writeLong(time);
+        out.writeUTF(category);
+        out.writeUTF(action);
+        out.writeUTF(label);
+        out.writeLong(value);
+    }
+
+    static AnalyticsEvent readFrom(DataInput in) throws IOException {
+        int kind = in.readByte();
+        long time = in.readLong();
+        String category = in.readUTF();
+        String action = in.readUTF();
+        String label = in.readUTF();
+        long value = in.readLong();
+        return new AnalyticsEvent(kind, category, action, label, value, time);
+    }
+
+    @Override
+    public String toString() {
+        return kind == SCREEN_VIEW ? "screen " + category : "event " + category + "/" + action + "/" + label + "=" + value;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves analytics hits off the editor's event thread.
+ *
+ * track() only puts the hit into a lock-free ring. If that is full the hit goes into a larger
+ * spill ring and the flusher thread is asked to journal it right away. A background flusher
+ * appends both rings to the journal every second, so a process that dies loses about a second of
+ * hits, and every 30 seconds hands the journal to the sink in batches and deletes it. Hits are
+ * sent at least once: a batch that was sent right before the process died may be sent again.
+ *
+ * Hits are only dropped, and counted, once the journal is full. The spill ring holds more hits
+ * than fit into the journal, so it can't fill up before.
+ */
+public final class AnalyticsPipeline {
+
+    private static final String TAG = "PESDK";
+
+    private static final int RING_CAPACITY = 256;
+    private static final int BATCH_SIZE = 64;
+    private static final long JOURNAL_INTERVAL_MS = 1000;
+    private static final long FLUSH_INTERVAL_MS = 30000;
+    private static final long MAX_JOURNAL_BYTES = 512 * 1024;
+    // Above MAX_JOURNAL_BYTES / 23, the smallest record: kind, time, three empty strings and value
+    private static final int SPILL_CAPACITY = 32768;
+
+    public interface SinkFactory {
+        @NonNull
+        AnalyticsSink create(@NonNull String trackerId);
+    }
+
+    // One pipeline per tracker id and process, shared by every parcelled tracker
+    private static final Map<String, AnalyticsPipeline> PIPELINES = new ConcurrentHashMap<>();
+    private static volatile SinkFactory sinkFactory;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "pesdk-analytics");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final AnalyticsSink sink;
+    private final EventJournal journal;
+    private final EventRing<AnalyticsEvent> ring = new EventRing<>(RING_CAPACITY);
+    // Hand-off of what the ring had no room for, flusher thread is the consumer
+    private final EventRing<AnalyticsEvent> spill = new EventRing<>(SPILL_CAPACITY);
+    private final AtomicBoolean journalRequested = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // Hits the journal had no room for
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Runnable journalTask = new Runnable() {
+        @Override
+        public void run() {
+            journal();
+        }
+    };
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    AnalyticsPipeline(@NonNull AnalyticsSink sink, @NonNull EventJournal journal) {
+        this.sink = sink;
+        this.journal = journal;
+    }
+
+    /**
+     * Replace the sink of pipelines created from now on, e.g. with an InMemorySink in tests.
+     * Has to be called before the first editor is opened.
+     */
+    public static void setSinkFactory(SinkFactory factory) {
+        sinkFactory = factory;
+    }
+
+    @NonNull
+    public static AnalyticsPipeline get(@NonNull Context context, @NonNull String trackerId) {
+        AnalyticsPipeline pipeline = PIPELINES.get(trackerId);
+        if (pipeline != null) {
+            return pipeline;
+        }
+
+        synchronized (PIPELINES) {
+            pipeline = PIPELINES.get(trackerId);
+            if (pipeline == null) {
+                Context app = context.getApplicationContext();
+                SinkFactory factory = sinkFactory;
+                AnalyticsSink sink = factory != null ? factory.create(trackerId) : new GoogleAnalyticsSink(app, trackerId);
+                File file = new File(app.getFilesDir(), "pesdk-analytics/" + trackerId + ".journal");
+
+                pipeline = new AnalyticsPipeline(sink, new EventJournal(file, MAX_JOURNAL_BYTES));
+                PIPELINES.put(trackerId, pipeline);
+
+                // The first run sends what is left in the journal from a previous process
+                FLUSHER.scheduleWithFixedDelay(pipeline.flushTask, 0, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                FLUSHER.scheduleWithFixedDelay(pipeline.journalTask, JOURNAL_INTERVAL_MS, JOURNAL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return pipeline;
+    }
+
+    // Safe to call from any thread, never blocks
+    public void track(@NonNull AnalyticsEvent event) {
+        if (ring.offer(event)) {
+            return;
+        }
+        if (spill.offer(event)) {
+            requestJournal();
+        } else {
+            // More than the journal holds is waiting already
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Hits dropped because the journal was full
+    public long dropped() {
+        return dropped.get();
+    }
+
+    // Journal as soon as possible instead of waiting for the interval
+    private void requestJournal() {
+        if (journalRequested.compareAndSet(false, true)) {
+            FLUSHER.execute(journalTask);
+        }
+    }
+
+    // Flush as soon as possible instead of waiting for the interval
+    public void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            FLUSHER.execute(flushTask);
+        }
+    }
+
+    // Flusher thread only: both rings to the journal
+    void journal() {
+        journalRequested.set(false);
+
+        List<AnalyticsEvent> drained = new ArrayList<>();
+        ring.drainTo(drained, Integer.MAX_VALUE);
+        spill.drainTo(drained, Integer.MAX_VALUE);
+
+        try {
+            int written = journal.append(drained);
+            if (written < drained.size()) {
+                dropped.addAndGet(drained.size() - written);
+                Log.w(TAG, "Analytics journal is full, dropped " + (drained.size() - written) + " events");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not journal analytics events, sending them directly", e);
+            send(drained);
+        }
+    }
+
+    // Flusher thread only
+    void flush() {
+        flushRequested.set(false);
+        journal();
+
+        if (journal.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (send(journal.readAll())) {
+                journal.clear();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read analytics journal", e);
+            journal.clear();
+        }
+    }
+
+    private boolean send(List<AnalyticsEvent> events) {
+        try {
+            for (int i = 0; i < events.size(); i += BATCH_SIZE) {
+                sink.send(events.subList(i, Math.min(events.size(), i + BATCH_SIZE)));
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not send analytics events, retrying with the next flush", e);
+            return false;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Analytics sink failed", e);
+            return false;
+        }
+    }
+}
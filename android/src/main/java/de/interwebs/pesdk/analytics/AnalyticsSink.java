@@ -0,0 +1,22 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where analytics hits end up. Called from the flusher thread only, one batch at a time.
+ */
+public interface AnalyticsSink {
+
+    // Throwing keeps the batch in the journal, it is sent again with the next flush
+    void send(List<AnalyticsEvent> batch) throws IOException;
+}
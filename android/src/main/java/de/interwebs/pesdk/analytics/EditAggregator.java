@@ -0,0 +1,109 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Folds the slider values of one editor session into fixed-bucket histograms, which are sent as
+ * a single summary event when the session ends instead of one hit per change.
+ *
+ * record() only touches primitive arrays, nothing is allocated on the event path.
+ */
+public final class EditAggregator {
+
+    // Metrics, one per PESDKEvents state event that is aggregated
+    public static final int CONTRAST = 0;
+    public static final int BRIGHTNESS = 1;
+    public static final int SATURATION = 2;
+    public static final int BRUSH_SIZE = 3;
+    public static final int BRUSH_HARDNESS = 4;
+    public static final int FILTER_INTENSITY = 5;
+    public static final int FOCUS_INTENSITY = 6;
+
+    private static final String[] KEYS = {"contrast", "brightness", "saturation", "brush_size", "brush_hardness", "filter_intensity", "focus_intensity"};
+    private static final float[] MIN = {-1, -1, -1, 0, 0, 0, 0};
+    private static final float[] MAX = {1, 1, 1, 100, 1, 1, 1};
+    private static final int METRICS = KEYS.length;
+
+    // Values outside of a metric's range land in the first or last bucket
+    static final int BUCKETS = 10;
+
+    private static final ConcurrentMap<String, EditAggregator> SESSIONS = new ConcurrentHashMap<>();
+
+    private final int[] buckets = new int[METRICS * BUCKETS];
+    private final int[] counts = new int[METRICS];
+    private final float[] sums = new float[METRICS];
+
+    EditAggregator() {}
+
+    // Aggregator of the given editor session, shared by every parcelled tracker of the session
+    public static EditAggregator forSession(String sessionToken) {
+        EditAggregator aggregator = SESSIONS.get(sessionToken);
+        if (aggregator == null) {
+            EditAggregator created = new EditAggregator();
+            aggregator = SESSIONS.putIfAbsent(sessionToken, created);
+            if (aggregator == null) {
+                aggregator = created;
+            }
+        }
+        return aggregator;
+    }
+
+    // Ends the session, returns its summary or null if nothing was recorded
+    public static AnalyticsEvent finish(String sessionToken) {
+        EditAggregator aggregator = sessionToken != null ? SESSIONS.remove(sessionToken) : null;
+        return aggregator != null ? aggregator.summary() : null;
+    }
+
+    public synchronized void record(int metric, float value) {
+        float min = MIN[metric];
+        int bucket = (int) ((value - min) / (MAX[metric] - min) * BUCKETS);
+        if (bucket < 0) {
+            bucket = 0;
+        } else if (bucket >= BUCKETS) {
+            bucket = BUCKETS - 1;
+        }
+        buckets[metric * BUCKETS + bucket]++;
+        counts[metric]++;
+        sums[metric] += value;
+    }
+
+    /**
+     * One event for the whole session: the label lists every recorded metric as
+     * key=count:mean:bucket0,bucket1,... separated by semicolons, the value is the number of
+     * changes.
+     */
+    synchronized AnalyticsEvent summary() {
+        StringBuilder label = new StringBuilder();
+        int total = 0;
+        for (int metric = 0; metric < METRICS; metric++) {
+            int count = counts[metric];
+            if (count == 0) {
+                continue;
+            }
+            total += count;
+
+            if (label.length() > 0) {
+                label.append(';');
+            }
+            label.append(KEYS[metric]).append('=').append(count).append(':')
+                    .append(Math.round(sums[metric] / count * 100) / 100f).append(':');
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                if (bucket > 0) {
+                    label.append(',');
+                }
+                label.append(buckets[metric * BUCKETS + bucket]);
+            }
+        }
+        return total == 0 ? null : AnalyticsEvent.event("session summary", "edits", label.toString(), total);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of hits that have not been sent yet.
+ *
+ * Records are appended and synced before a batch is handed to the sink, and the file is deleted
+ * once the sink took everything. A record cut short by process death is dropped on read.
+ */
+final class EventJournal {
+
+    private final File file;
+    private final long maxBytes;
+
+    EventJournal(File file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    // Returns how many events were written, the rest is dropped once the journal is full
+    int append(List<AnalyticsEvent> events) throws IOException {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        FileOutputStream stream = new FileOutputStream(file, true);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            long size = file.length();
+            int written = 0;
+            for (AnalyticsEvent event : events) {
+                if (size + out.size() >= maxBytes) {
+                    break;
+                }
+                event.writeTo(out);
+                written++;
+            }
+            out.flush();
+            stream.getFD().sync();
+            return written;
+        } finally {
+            stream.close();
+        }
+    }
+
+    List<AnalyticsEvent> readAll() throws IOException {
+        List<AnalyticsEvent> events = new ArrayList<>();
+        if (!file.exists()) {
+            return events;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                events.add(AnalyticsEvent.readFrom(in));
+            }
+        } catch (EOFException e) {
+            // End of file or a torn last record
+        } finally {
+            in.close();
+        }
+        return events;
+    }
+
+    boolean isEmpty() {
+        return !file.exists() || file.length() == 0;
+    }
+
+    void clear() {
+        file.delete();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer, any number of producers and a single consumer.
+ *
+ * Producers claim a slot by moving the tail and publish into it afterwards; the consumer stops
+ * at the first slot that is not published yet.
+ */
+final class EventRing<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity has to be a power of two, got " + capacity);
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    // False if the ring is full
+    boolean offer(T item) {
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() > mask) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) t & mask, item);
+                return true;
+            }
+        }
+    }
+
+    // Consumer only
+    T poll() {
+        long h = head.get();
+        int index = (int) h & mask;
+        T item = slots.get(index);
+        if (item == null) {
+            return null;
+        }
+        // Clear the slot before releasing it to the producers
+        slots.lazySet(index, null);
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    // Consumer only
+    int drainTo(List<T> target, int max) {
+        int count = 0;
+        T item;
+        while (count < max && (item = poll()) != null) {
+            target.add(item);
+            count++;
+        }
+        return count;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.analytics.GoogleAnalytics;
+import com.google.android.gms.analytics.HitBuilders;
+import com.google.android.gms.analytics.Tracker;
+
+import java.util.List;
+
+/**
+ * Sends hits to Google Analytics. Hits carry their queue time, so they are attributed to when
+ * they happened rather than to when the batch went out.
+ */
+public final class GoogleAnalyticsSink implements AnalyticsSink {
+
+    private final Tracker tracker;
+
+    public GoogleAnalyticsSink(@NonNull Context context, @NonNull String trackerId) {
+        tracker = GoogleAnalytics.getInstance(context).newTracker(trackerId);
+    }
+
+    @Override
+    public void send(List<AnalyticsEvent> batch) {
+        long now = System.currentTimeMillis();
+        for (AnalyticsEvent event : batch) {
+            String queueTime = String.valueOf(Math.max(0, now - event.time));
+            if (event.kind == AnalyticsEvent.SCREEN_VIEW) {
+                tracker.setScreenName(event.category);
+                tracker.send(new HitBuilders.ScreenViewBuilder()
+                        .set("&qt", queueTime)
+                        .build());
+            } else {
+                tracker.send(new HitBuilders.EventBuilder()
+                        .setCategory(event.category)
+                        .setAction(event.action)
+                        .setLabel(event.label)
+                        .setValue(event.value)
+                        .set("&qt", queueTime)
+                        .build());
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every hit in memory instead of sending it, for tests and local debugging.
+ */
+public final class InMemorySink implements AnalyticsSink {
+
+    private final List<AnalyticsEvent> events = new ArrayList<>();
+    private int batches;
+
+    @Override
+    public synchronized void send(List<AnalyticsEvent> batch) {
+        events.addAll(batch);
+        batches++;
+    }
+
+    public synchronized List<AnalyticsEvent> events() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized int batches() {
+        return batches;
+    }
+
+    public synchronized void clear() {
+        events.clear();
+        batches = 0;
+    }
+}
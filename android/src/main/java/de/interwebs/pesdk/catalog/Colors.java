@@ -0,0 +1,55 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.catalog;
+
+/**
+ * Color values of the custom catalog. Pure Java, benchmarked in android/benchmark.
+ */
+public final class Colors {
+
+    private Colors() {}
+
+    /**
+     * ARGB of a hex color: `#rgb` and `#rrggbb` are opaque, `#aarrggbb` carries its alpha. The
+     * `#` is optional, case doesn't matter. Parsed in place, nothing is allocated unless the
+     * color is invalid.
+     *
+     * @throws NumberFormatException if it's none of the above
+     */
+    public static int parse(String color) {
+        int start = color.length() > 0 && color.charAt(0) == '#' ? 1 : 0;
+        int length = color.length() - start;
+        if (length != 3 && length != 6 && length != 8) {
+            throw new NumberFormatException("Invalid color " + color);
+        }
+
+        int value = 0;
+        for (int i = start; i < color.length(); i++) {
+            int digit = Character.digit(color.charAt(i), 16);
+            if (digit < 0) {
+                throw new NumberFormatException("Invalid color " + color);
+            }
+            value = value << 4 | digit;
+        }
+
+        switch (length) {
+            case 3:
+                // Every digit doubled, #abc is #aabbcc
+                int r = value >> 8 & 0xf;
+                int g = value >> 4 & 0xf;
+                int b = value & 0xf;
+                return 0xff000000 | (r << 4 | r) << 16 | (g << 4 | g) << 8 | (b << 4 | b);
+            case 6:
+                return 0xff000000 | value;
+            default:
+                return value;
+        }
+    }
+}
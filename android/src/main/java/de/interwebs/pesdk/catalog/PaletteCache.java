@@ -0,0 +1,90 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.catalog;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interns whatever is built from a color palette (e.g. the editor's color configs), so opening
+ * the editor with the same palette again reuses the earlier result.
+ *
+ * Palettes are compared by their ARGB values; the least recently used one is dropped once more
+ * than maxPalettes are cached.
+ */
+public final class PaletteCache<T> {
+
+    public interface Factory<T> {
+        T create(int[] argb);
+    }
+
+    // Palette values with their hash computed once
+    private static final class Key {
+        final int[] argb;
+        final int hash;
+
+        Key(int[] argb) {
+            this.argb = argb;
+            this.hash = Arrays.hashCode(argb);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && hash == ((Key) other).hash && Arrays.equals(argb, ((Key) other).argb);
+        }
+    }
+
+    private final Map<Key, T> palettes;
+    private final Factory<T> factory;
+    private int hits;
+    private int misses;
+
+    public PaletteCache(final int maxPalettes, Factory<T> factory) {
+        this.factory = factory;
+        this.palettes = new LinkedHashMap<Key, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, T> eldest) {
+                return size() > maxPalettes;
+            }
+        };
+    }
+
+    // The caller must not change argb afterwards, it becomes part of the key
+    public synchronized T intern(int[] argb) {
+        Key key = new Key(argb);
+        T palette = palettes.get(key);
+        if (palette == null) {
+            palette = factory.create(argb);
+            palettes.put(key, palette);
+            misses++;
+        } else {
+            hits++;
+        }
+        return palette;
+    }
+
+    public synchronized int hits() {
+        return hits;
+    }
+
+    public synchronized int misses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        palettes.clear();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+package de.interwebs.pesdk.exif;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Which EXIF tags are carried over into an export, by name as in the EXIF standard, e.g.
+ * `DateTimeOriginal`. `GPS` stands for every tag of the GPS IFD.
+ *
+ * Orientation is never carried over, exports are upright and say so. Thumbnails, maker notes
+ * and tags that describe the source's pixels, e.g. its size, can't be allowed.
+ */
+public final class ExifAllowList {
+
+    public static final String GPS = "GPS";
+
+    private static final Map<String, Integer> TAGS = new HashMap<>();
+
+    static {
+        tag("ImageDescription", ExifData.IFD_0, 0x010e);
+        tag("Make", ExifData.IFD_0, 0x010f);
+        tag("Model", ExifData.IFD_0, 0x0110);
+        tag("Software", ExifData.IFD_0, 0x0131);
+        tag("DateTime", ExifData.IFD_0, 0x0132);
+        tag("Artist", ExifData.IFD_0, 0x013b);
+        tag("Copyright", ExifData.IFD_0, 0x8298);
+
+        tag("ExposureTime", ExifData.IFD_EXIF, 0x829a);
+        tag("FNumber", ExifData.IFD_EXIF, 0x829d);
+        tag("ExposureProgram", ExifData.IFD_EXIF, 0x8822);
+        tag("ISOSpeedRatings", ExifData.IFD_EXIF, 0x8827);
+        tag("DateTimeOriginal", ExifData.IFD_EXIF, 0x9003);
+        tag("DateTimeDigitized", ExifData.IFD_EXIF, 0x9004);
+        tag("OffsetTime", ExifData.IFD_EXIF, 0x9010);
+        tag("OffsetTimeOriginal", ExifData.IFD_EXIF, 0x9011);
+        tag("OffsetTimeDigitized", ExifData.IFD_EXIF, 0x9012);
+        tag("ExposureBiasValue", ExifData.IFD_EXIF, 0x9204);
+        tag("MeteringMode", ExifData.IFD_EXIF, 0x9207);
+        tag("Flash", ExifData.IFD_EXIF, 0x9209);
+        tag("FocalLength", ExifData.IFD_EXIF, 0x920a);
+        tag("SubSecTime", ExifData.IFD_EXIF, 0x9290);
+        tag("SubSecTimeOriginal", ExifData.IFD_EXIF, 0x9291);
+        tag("SubSecTimeDigitized", ExifData.IFD_EXIF, 0x9292);
+        tag("WhiteBalance", ExifData.IFD_EXIF, 0xa403);
+        tag("FocalLengthIn35mmFilm", ExifData.IFD_EXIF, 0xa405);
+        tag("LensMake", ExifData.IFD_EXIF, 0xa433);
+        tag("LensModel", ExifData.IFD_EXIF, 0xa434);
+    }
+
+    // Capture time, camera and location, what apps usually restore from the original
+    public static final ExifAllowList DEFAULT = of(Arrays.asList(
+            "DateTime", "DateTimeOriginal", "DateTimeDigitized",
+            "SubSecTime", "SubSecTimeOriginal", "SubSecTimeDigitized",
+            "OffsetTime", "OffsetTimeOriginal", "OffsetTimeDigitized",
+            "Make", "Model", GPS));
+
+    private final Set<String> names;
+    // ifd << 16 | tag
+    private final Set<Integer> keys;
+    private final boolean gps;
+
+    private ExifAllowList(Set<String> names, Set<Integer> keys, boolean gps) {
+        this.names = names;
+        this.keys = keys;
+        this.gps = gps;
+    }
+
+    private static void tag(String name, int ifd, int tag) {
+        TAGS.put(name, ifd << 16 | tag);
+    }
+
+    /**
+     * @throws IllegalArgumentException for names it doesn't know
+     */
+    public static ExifAllowList of(Collection<String> names) {
+        Set<String> sorted = new TreeSet<>();
+        Set<Integer> keys = new HashSet<>();
+        boolean gps = false;
+        for (String name : names) {
+            if (GPS.equals(name)) {
+                gps = true;
+            } else if (TAGS.containsKey(name)) {
+                keys.add(TAGS.get(name));
+            } else {
+                throw new IllegalArgumentException("Unknown EXIF tag " + name);
+            }
+            sorted.add(name);
+        }
+        return new ExifAllowList(Collections.unmodifiableSet(sorted), keys, gps);
+    }
+
+    public boolean allows(int ifd, int tag) {
+        return ifd == ExifData.IFD_GPS ? gps : keys.contains(ifd << 16 | tag);
+    }
+
+    // Sorted, the same for lists that allow the same
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+package de.interwebs.pesdk.exif;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tags of a JPEG's EXIF segment that ExifWriter can carry over: those of IFD0, the EXIF IFD
+ * and the GPS IFD. Values are kept as raw bytes in the byte order of the source.
+ */
+public final class ExifData {
+
+    public static final int IFD_0 = 0;
+    public static final int IFD_EXIF = 1;
+    public static final int IFD_GPS = 2;
+
+    public static final int TAG_ORIENTATION = 0x0112;
+    static final int TAG_EXIF_POINTER = 0x8769;
+    static final int TAG_GPS_POINTER = 0x8825;
+
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_IFD = 13;
+
+    // Orientation values as in ExifInterface
+    public static final int ORIENTATION_NORMAL = 1;
+
+    public static final class Entry {
+        public final int ifd;
+        public final int tag;
+        public final int type;
+        public final int count;
+        final byte[] value;
+
+        Entry(int ifd, int tag, int type, int count, byte[] value) {
+            this.ifd = ifd;
+            this.tag = tag;
+            this.type = type;
+            this.count = count;
+            this.value = value;
+        }
+    }
+
+    final ByteOrder order;
+    final List<Entry> entries;
+
+    ExifData(ByteOrder order, List<Entry> entries) {
+        this.order = order;
+        this.entries = entries;
+    }
+
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    // One of the ExifInterface.ORIENTATION_ values, normal if there is none
+    public int orientation() {
+        for (Entry entry : entries) {
+            if (entry.ifd == IFD_0 && entry.tag == TAG_ORIENTATION && entry.type == TYPE_SHORT && entry.count >= 1) {
+                return ByteBuffer.wrap(entry.value).order(order).getShort() & 0xffff;
+            }
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    // Bytes per value of each TIFF type, 0 for unknown types
+    static int typeSize(int type) {
+        switch (type) {
+            case 1: // BYTE
+            case 2: // ASCII
+            case 6: // SBYTE
+            case 7: // UNDEFINED
+                return 1;
+            case 3: // SHORT
+            case 8: // SSHORT
+                return 2;
+            case 4: // LONG
+            case 9: // SLONG
+            case 11: // FLOAT
+            case 13: // IFD
+                return 4;
+            case 5: // RATIONAL
+            case 10: // SRATIONAL
+            case 12: // DOUBLE
+                return 8;
+            default:
+                return 0;
+        }
+    }
+}
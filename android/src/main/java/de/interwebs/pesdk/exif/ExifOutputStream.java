@@ -0,0 +1,175 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+package de.interwebs.pesdk.exif;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes a JPEG through while replacing its EXIF: EXIF segments in front of the image data are
+ * dropped and the given segment is written after the SOI (and the JFIF segment if there is one).
+ *
+ * Segments in front of the image data are held until they are complete, everything from the
+ * start of scan on goes straight through. Anything that isn't a JPEG passes unchanged.
+ */
+public final class ExifOutputStream extends FilterOutputStream {
+
+    private static final int STATE_START = 0;
+    private static final int STATE_HEADER = 1;
+    private static final int STATE_DATA = 2;
+
+    private final byte[] segment;
+    private boolean inserted;
+    private int state = STATE_START;
+
+    // Bytes in front of the image data that aren't a complete segment yet
+    private byte[] pending = new byte[1024];
+    private int pendingCount;
+    private final byte[] single = new byte[1];
+
+    /**
+     * @param segment APP1 segment from its marker on, see ExifWriter, null only drops the EXIF
+     */
+    public ExifOutputStream(OutputStream out, byte[] segment) {
+        super(out);
+        this.segment = segment;
+        this.inserted = segment == null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (state == STATE_DATA) {
+            out.write(b, off, len);
+            return;
+        }
+
+        if (pendingCount + len > pending.length) {
+            byte[] grown = new byte[Math.max(pending.length * 2, pendingCount + len)];
+            System.arraycopy(pending, 0, grown, 0, pendingCount);
+            pending = grown;
+        }
+        System.arraycopy(b, off, pending, pendingCount, len);
+        pendingCount += len;
+        process();
+    }
+
+    // Writes or drops every complete unit at the start of pending
+    private void process() throws IOException {
+        int position = 0;
+        while (state != STATE_DATA) {
+            int available = pendingCount - position;
+            if (state == STATE_START) {
+                if (available < 2) {
+                    break;
+                }
+                if ((pending[position] & 0xff) != 0xff || (pending[position + 1] & 0xff) != 0xd8) {
+                    state = STATE_DATA;
+                    break;
+                }
+                out.write(pending, position, 2);
+                position += 2;
+                state = STATE_HEADER;
+                continue;
+            }
+
+            if (available < 2) {
+                break;
+            }
+            if ((pending[position] & 0xff) != 0xff) {
+                // Not at a marker, leave the rest alone
+                insert();
+                state = STATE_DATA;
+                break;
+            }
+            int marker = pending[position + 1] & 0xff;
+            if (marker == 0xff) {
+                // Fill byte
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7)) {
+                out.write(pending, position, 2);
+                position += 2;
+                continue;
+            }
+            if (marker == 0xda || marker == 0xd9) {
+                insert();
+                state = STATE_DATA;
+                break;
+            }
+
+            if (available < 4) {
+                break;
+            }
+            int length = 2 + (((pending[position + 2] & 0xff) << 8) | (pending[position + 3] & 0xff));
+            if (available < length) {
+                break;
+            }
+            if (marker == 0xe1 && ExifReader.isExif(pending, position + 4, position + length)) {
+                position += length;
+                continue;
+            }
+            if (marker != 0xe0) {
+                insert();
+            }
+            out.write(pending, position, length);
+            position += length;
+        }
+
+        // What is left waits for more bytes, or goes through if the header is done
+        if (state == STATE_DATA) {
+            out.write(pending, position, pendingCount - position);
+            pendingCount = 0;
+            pending = null;
+        } else {
+            System.arraycopy(pending, position, pending, 0, pendingCount - position);
+            pendingCount -= position;
+        }
+    }
+
+    private void insert() throws IOException {
+        if (!inserted) {
+            out.write(segment);
+            inserted = true;
+        }
+    }
+
+    /**
+     * Writes the segment and what is held back if the JPEG ended in front of its image data. The
+     * stream stays open, close calls this as well.
+     */
+    public void finish() throws IOException {
+        if (state != STATE_DATA) {
+            // Header only or cut short, the segment still goes after what was complete
+            if (state == STATE_HEADER) {
+                insert();
+            }
+            out.write(pending, 0, pendingCount);
+            state = STATE_DATA;
+            pendingCount = 0;
+            pending = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            super.close();
+        }
+    }
+}
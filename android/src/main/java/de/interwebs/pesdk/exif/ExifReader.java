@@ -0,0 +1,194 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+package de.interwebs.pesdk.exif;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the EXIF segment of a JPEG from a stream. Only the markers in front of the image data
+ * are read, the stream is left as soon as the EXIF segment or the start of scan is reached.
+ */
+public final class ExifReader {
+
+    private static final int MARKER_SOI = 0xd8;
+    private static final int MARKER_EOI = 0xd9;
+    private static final int MARKER_SOS = 0xda;
+    private static final int MARKER_APP1 = 0xe1;
+
+    private ExifReader() {}
+
+    /**
+     * EXIF of the JPEG in, null if it has none or isn't a JPEG. Doesn't close in.
+     */
+    public static ExifData read(InputStream in) throws IOException {
+        InputStream input = new BufferedInputStream(in, 8192);
+        if (input.read() != 0xff || input.read() != MARKER_SOI) {
+            return null;
+        }
+
+        while (true) {
+            int b = input.read();
+            if (b == -1) {
+                return null;
+            }
+            if (b != 0xff) {
+                // Not at a marker, the file is broken
+                return null;
+            }
+            int marker = input.read();
+            // Fill bytes in front of a marker
+            while (marker == 0xff) {
+                marker = input.read();
+            }
+            if (marker == -1 || marker == MARKER_SOS || marker == MARKER_EOI) {
+                return null;
+            }
+            if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7)) {
+                continue;
+            }
+
+            int length = (readByte(input) << 8) | readByte(input);
+            if (length < 2) {
+                return null;
+            }
+            if (marker == MARKER_APP1 && length >= 8) {
+                byte[] segment = new byte[length - 2];
+                readFully(input, segment);
+                if (isExif(segment, 0, segment.length)) {
+                    return parseTiff(segment, 6);
+                }
+            } else {
+                skipFully(input, length - 2);
+            }
+        }
+    }
+
+    // Whether the EXIF identifier "Exif\0\0" is at offset, within data up to end
+    static boolean isExif(byte[] data, int offset, int end) {
+        return end - offset >= 6 && data[offset] == 'E' && data[offset + 1] == 'x' && data[offset + 2] == 'i' && data[offset + 3] == 'f'
+                && data[offset + 4] == 0 && data[offset + 5] == 0;
+    }
+
+    private static ExifData parseTiff(byte[] segment, int start) {
+        if (segment.length - start < 8) {
+            return null;
+        }
+        ByteOrder order;
+        if (segment[start] == 'I' && segment[start + 1] == 'I') {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if (segment[start] == 'M' && segment[start + 1] == 'M') {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            return null;
+        }
+
+        // Offsets are relative to the TIFF header
+        ByteBuffer tiff = ByteBuffer.wrap(segment, start, segment.length - start).slice().order(order);
+        if ((tiff.getShort(2) & 0xffff) != 42) {
+            return null;
+        }
+
+        List<ExifData.Entry> entries = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        int exifOffset = readIfd(tiff, tiff.getInt(4), ExifData.IFD_0, entries, visited);
+        int gpsOffset = -1;
+        for (ExifData.Entry entry : entries) {
+            if (entry.tag == ExifData.TAG_GPS_POINTER) {
+                gpsOffset = ByteBuffer.wrap(entry.value).order(order).getInt();
+            }
+        }
+        if (exifOffset > 0) {
+            readIfd(tiff, exifOffset, ExifData.IFD_EXIF, entries, visited);
+        }
+        if (gpsOffset > 0) {
+            readIfd(tiff, gpsOffset, ExifData.IFD_GPS, entries, visited);
+        }
+        return new ExifData(order, entries);
+    }
+
+    // Adds the IFD's entries, returns the EXIF IFD's offset if it points to one, else -1
+    private static int readIfd(ByteBuffer tiff, int offset, int ifd, List<ExifData.Entry> entries, Set<Integer> visited) {
+        int exifOffset = -1;
+        if (offset < 8 || offset > tiff.limit() - 2 || !visited.add(offset)) {
+            return exifOffset;
+        }
+
+        int count = tiff.getShort(offset) & 0xffff;
+        for (int i = 0; i < count; i++) {
+            int position = offset + 2 + i * 12;
+            if (position + 12 > tiff.limit()) {
+                break;
+            }
+            int tag = tiff.getShort(position) & 0xffff;
+            int type = tiff.getShort(position + 2) & 0xffff;
+            long valueCount = tiff.getInt(position + 4) & 0xffffffffL;
+            int size = ExifData.typeSize(type);
+            if (size == 0 || valueCount * size > tiff.limit()) {
+                continue;
+            }
+
+            int length = (int) valueCount * size;
+            int valueOffset = length <= 4 ? position + 8 : tiff.getInt(position + 8);
+            if (valueOffset < 0 || valueOffset + length > tiff.limit()) {
+                continue;
+            }
+            byte[] value = new byte[length];
+            for (int j = 0; j < length; j++) {
+                value[j] = tiff.get(valueOffset + j);
+            }
+
+            if (ifd == ExifData.IFD_0 && tag == ExifData.TAG_EXIF_POINTER && (type == ExifData.TYPE_LONG || type == ExifData.TYPE_IFD)) {
+                exifOffset = tiff.getInt(position + 8);
+            }
+            entries.add(new ExifData.Entry(ifd, tag, type, (int) valueCount, value));
+        }
+        return exifOffset;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count == -1) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+package de.interwebs.pesdk.exif;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the APP1 segment for an export from the source's EXIF: the allowed tags in IFD0, the
+ * EXIF IFD and the GPS IFD, orientation normal, no thumbnail.
+ */
+public final class ExifWriter {
+
+    // The segment's length field can't count more
+    private static final int MAX_SEGMENT_LENGTH = 0xffff;
+
+    private static final Comparator<ExifData.Entry> BY_TAG = new Comparator<ExifData.Entry>() {
+        @Override
+        public int compare(ExifData.Entry a, ExifData.Entry b) {
+            return a.tag < b.tag ? -1 : a.tag == b.tag ? 0 : 1;
+        }
+    };
+
+    private ExifWriter() {}
+
+    /**
+     * The whole segment from its marker on, ready to be written after the SOI. Null if nothing
+     * is allowed or the allowed tags don't fit into a segment.
+     */
+    public static byte[] segment(ExifData exif, ExifAllowList allowList) {
+        List<ExifData.Entry> ifd0 = new ArrayList<>();
+        List<ExifData.Entry> exifIfd = new ArrayList<>();
+        List<ExifData.Entry> gpsIfd = new ArrayList<>();
+        for (ExifData.Entry entry : exif.entries) {
+            if (!allowList.allows(entry.ifd, entry.tag)) {
+                continue;
+            }
+            switch (entry.ifd) {
+                case ExifData.IFD_0:
+                    ifd0.add(entry);
+                    break;
+                case ExifData.IFD_EXIF:
+                    exifIfd.add(entry);
+                    break;
+                case ExifData.IFD_GPS:
+                    gpsIfd.add(entry);
+                    break;
+            }
+        }
+        if (ifd0.isEmpty() && exifIfd.isEmpty() && gpsIfd.isEmpty()) {
+            return null;
+        }
+
+        ifd0.add(new ExifData.Entry(ExifData.IFD_0, ExifData.TAG_ORIENTATION, ExifData.TYPE_SHORT, 1,
+                shortValue(exif, ExifData.ORIENTATION_NORMAL)));
+        // Pointer values are filled in once the layout is known
+        if (!exifIfd.isEmpty()) {
+            ifd0.add(new ExifData.Entry(ExifData.IFD_0, ExifData.TAG_EXIF_POINTER, ExifData.TYPE_LONG, 1, new byte[4]));
+        }
+        if (!gpsIfd.isEmpty()) {
+            ifd0.add(new ExifData.Entry(ExifData.IFD_0, ExifData.TAG_GPS_POINTER, ExifData.TYPE_LONG, 1, new byte[4]));
+        }
+        Collections.sort(ifd0, BY_TAG);
+        Collections.sort(exifIfd, BY_TAG);
+        Collections.sort(gpsIfd, BY_TAG);
+
+        // TIFF header, then each IFD followed by its values
+        int exifOffset = 8 + ifdSize(ifd0);
+        int gpsOffset = exifOffset + ifdSize(exifIfd);
+        int tiffLength = gpsOffset + ifdSize(gpsIfd);
+        int length = 2 + 6 + tiffLength;
+        if (length > MAX_SEGMENT_LENGTH) {
+            return null;
+        }
+
+        ByteBuffer segment = ByteBuffer.allocate(2 + length);
+        segment.put((byte) 0xff).put((byte) 0xe1).putShort((short) length);
+        segment.put(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+
+        ByteBuffer tiff = segment.slice().order(exif.order);
+        byte order = exif.order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M';
+        tiff.put(order).put(order);
+        tiff.putShort((short) 42).putInt(8);
+
+        writeIfd(tiff, 8, ifd0, exifIfd.isEmpty() ? 0 : exifOffset, gpsIfd.isEmpty() ? 0 : gpsOffset);
+        if (!exifIfd.isEmpty()) {
+            writeIfd(tiff, exifOffset, exifIfd, 0, 0);
+        }
+        if (!gpsIfd.isEmpty()) {
+            writeIfd(tiff, gpsOffset, gpsIfd, 0, 0);
+        }
+        return segment.array();
+    }
+
+    // Entry count, entries, next IFD offset and the values that don't fit into an entry
+    private static int ifdSize(List<ExifData.Entry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        int size = 2 + entries.size() * 12 + 4;
+        for (ExifData.Entry entry : entries) {
+            size += dataSize(entry);
+        }
+        return size;
+    }
+
+    // Bytes stored outside the entry, padded to an even offset
+    private static int dataSize(ExifData.Entry entry) {
+        int length = entry.value.length;
+        return length <= 4 ? 0 : length + (length & 1);
+    }
+
+    private static void writeIfd(ByteBuffer tiff, int offset, List<ExifData.Entry> entries, int exifOffset, int gpsOffset) {
+        int data = offset + 2 + entries.size() * 12 + 4;
+        tiff.position(offset);
+        tiff.putShort((short) entries.size());
+        for (ExifData.Entry entry : entries) {
+            tiff.putShort((short) entry.tag).putShort((short) entry.type).putInt(entry.count);
+            if (entry.tag == ExifData.TAG_EXIF_POINTER && entry.ifd == ExifData.IFD_0) {
+                tiff.putInt(exifOffset);
+            } else if (entry.tag == ExifData.TAG_GPS_POINTER && entry.ifd == ExifData.IFD_0) {
+                tiff.putInt(gpsOffset);
+            } else if (entry.value.length <= 4) {
+                // Left aligned in the value field
+                byte[] field = new byte[4];
+                System.arraycopy(entry.value, 0, field, 0, entry.value.length);
+                tiff.put(field);
+            } else {
+                tiff.putInt(data);
+                int position = tiff.position();
+                tiff.position(data);
+                tiff.put(entry.value);
+                tiff.position(position);
+                data += dataSize(entry);
+            }
+        }
+        tiff.putInt(0);
+    }
+
+    private static byte[] shortValue(ExifData exif, int value) {
+        return ByteBuffer.allocate(2).order(exif.order).putShort((short) value).array();
+    }
+}
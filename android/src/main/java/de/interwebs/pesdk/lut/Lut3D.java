@@ -0,0 +1,193 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.lut;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 3D color lookup table compiled from a PESDK LUT tile texture.
+ *
+ * The texture holds vTiles x hTiles tiles, one per blue level (row major). Inside a tile red
+ * grows along x and green along y. The compiled table stores r, g, b bytes with red running
+ * fastest, which keeps the eight samples of a trilinear lookup close together. The table lives
+ * in a ByteBuffer so it can be memory-mapped straight from a LutFile.
+ */
+public final class Lut3D {
+
+    final int sizeR;
+    final int sizeG;
+    final int sizeB;
+    final ByteBuffer data;
+
+    // Per channel value: lower grid index and 8 bit fixed point weight of the upper one
+    private final int[] indexR = new int[256];
+    private final int[] indexG = new int[256];
+    private final int[] indexB = new int[256];
+    private final int[] weightR = new int[256];
+    private final int[] weightG = new int[256];
+    private final int[] weightB = new int[256];
+
+    Lut3D(int sizeR, int sizeG, int sizeB, ByteBuffer data) {
+        if (sizeR < 2 || sizeG < 2 || sizeB < 2) {
+            throw new IllegalArgumentException("LUT needs at least two levels per channel");
+        }
+        if (data.capacity() != sizeR * sizeG * sizeB * 3) {
+            throw new IllegalArgumentException("LUT data doesn't match its size");
+        }
+        this.sizeR = sizeR;
+        this.sizeG = sizeG;
+        this.sizeB = sizeB;
+        this.data = data;
+
+        axis(sizeR, indexR, weightR);
+        axis(sizeG, indexG, weightG);
+        axis(sizeB, indexB, weightB);
+    }
+
+    private static void axis(int size, int[] index, int[] weight) {
+        for (int v = 0; v < 256; v++) {
+            // Position in 8 bit fixed point
+            int pos = v * (size - 1) * 256 / 255;
+            int i = Math.min(pos >> 8, size - 2);
+            index[v] = i;
+            weight[v] = pos - (i << 8);
+        }
+    }
+
+    /**
+     * Compile a LUT texture given as ARGB pixels.
+     */
+    public static Lut3D compile(int[] argb, int width, int height, LutLayout layout) {
+        int tileWidth = width / layout.hTiles;
+        int tileHeight = height / layout.vTiles;
+        if (tileWidth < 2 || tileHeight < 2 || argb.length < width * height) {
+            throw new IllegalArgumentException("LUT texture " + width + "x" + height + " doesn't fit " + layout.vTiles + "x" + layout.hTiles + " tiles");
+        }
+
+        int sizeB = layout.vTiles * layout.hTiles;
+        byte[] data = new byte[tileWidth * tileHeight * sizeB * 3];
+
+        int o = 0;
+        for (int b = 0; b < sizeB; b++) {
+            int tileX = (b % layout.hTiles) * tileWidth;
+            int tileY = (b / layout.hTiles) * tileHeight;
+            for (int g = 0; g < tileHeight; g++) {
+                int row = (tileY + g) * width + tileX;
+                for (int r = 0; r < tileWidth; r++) {
+                    int color = argb[row + r];
+                    data[o++] = (byte) (color >> 16);
+                    data[o++] = (byte) (color >> 8);
+                    data[o++] = (byte) color;
+                }
+            }
+        }
+
+        return new Lut3D(tileWidth, tileHeight, sizeB, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Identity LUT, mostly useful for testing and benchmarks.
+     */
+    public static Lut3D identity(int size) {
+        byte[] data = new byte[size * size * size * 3];
+        int o = 0;
+        for (int b = 0; b < size; b++) {
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    data[o++] = (byte) (r * 255 / (size - 1));
+                    data[o++] = (byte) (g * 255 / (size - 1));
+                    data[o++] = (byte) (b * 255 / (size - 1));
+                }
+            }
+        }
+        return new Lut3D(size, size, size, ByteBuffer.wrap(data));
+    }
+
+    public int sizeR() {
+        return sizeR;
+    }
+
+    public int sizeG() {
+        return sizeG;
+    }
+
+    public int sizeB() {
+        return sizeB;
+    }
+
+    // Read-only view of the table, r g b bytes with red running fastest
+    public ByteBuffer data() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Apply the LUT in place to count ARGB pixels starting at offset.
+     *
+     * @param intensity 0 (original) to 256 (full filter)
+     */
+    public void apply(int[] pixels, int offset, int count, int intensity) {
+        final ByteBuffer lut = data;
+        final int strideG = sizeR * 3;
+        final int strideB = sizeR * sizeG * 3;
+
+        for (int p = offset, end = offset + count; p < end; p++) {
+            int color = pixels[p];
+            int r = (color >> 16) & 0xff;
+            int g = (color >> 8) & 0xff;
+            int b = color & 0xff;
+
+            int wr = weightR[r];
+            int wg = weightG[g];
+            int wb = weightB[b];
+
+            int i000 = indexB[b] * strideB + indexG[g] * strideG + indexR[r] * 3;
+            int i100 = i000 + 3;
+            int i010 = i000 + strideG;
+            int i110 = i010 + 3;
+            int i001 = i000 + strideB;
+            int i101 = i001 + 3;
+            int i011 = i001 + strideG;
+            int i111 = i011 + 3;
+
+            int outR = sample(lut, i000, i100, i010, i110, i001, i101, i011, i111, wr, wg, wb);
+            int outG = sample(lut, i000 + 1, i100 + 1, i010 + 1, i110 + 1, i001 + 1, i101 + 1, i011 + 1, i111 + 1, wr, wg, wb);
+            int outB = sample(lut, i000 + 2, i100 + 2, i010 + 2, i110 + 2, i001 + 2, i101 + 2, i011 + 2, i111 + 2, wr, wg, wb);
+
+            if (intensity < 256) {
+                outR = r + (((outR - r) * intensity) >> 8);
+                outG = g + (((outG - g) * intensity) >> 8);
+                outB = b + (((outB - b) * intensity) >> 8);
+            }
+
+            pixels[p] = (color & 0xff000000) | (outR << 16) | (outG << 8) | outB;
+        }
+    }
+
+    // Trilinear interpolation of one channel, weights in 8 bit fixed point
+    private static int sample(ByteBuffer lut, int i000, int i100, int i010, int i110, int i001, int i101, int i011, int i111, int wr, int wg, int wb) {
+        int c000 = lut.get(i000) & 0xff;
+        int c010 = lut.get(i010) & 0xff;
+        int c001 = lut.get(i001) & 0xff;
+        int c011 = lut.get(i011) & 0xff;
+
+        int c00 = (c000 << 8) + ((lut.get(i100) & 0xff) - c000) * wr;
+        int c10 = (c010 << 8) + ((lut.get(i110) & 0xff) - c010) * wr;
+        int c01 = (c001 << 8) + ((lut.get(i101) & 0xff) - c001) * wr;
+        int c11 = (c011 << 8) + ((lut.get(i111) & 0xff) - c011) * wr;
+
+        // Green step leaves 16 fractional bits, drop back to 8 so the blue step stays in int range
+        int c0 = (c00 << 8) + (c10 - c00) * wg;
+        int c1 = (c01 << 8) + (c11 - c01) * wg;
+        c0 = (c0 + 128) >> 8;
+        c1 = (c1 + 128) >> 8;
+
+        return ((c0 << 8) + (c1 - c0) * wb + (1 << 15)) >> 16;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.lut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Applies a Lut3D to ARGB pixel buffers on the CPU, split into row bands over a thread pool.
+ *
+ * Pure Java so it also runs headless (batch rendering, JVM benchmarks).
+ */
+public final class LutEngine {
+
+    // A few bands per thread evens out uneven scheduling
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final ExecutorService pool;
+    private final int parallelism;
+
+    public LutEngine(ExecutorService pool, int parallelism) {
+        this.pool = pool;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Filter the pixels in place.
+     *
+     * @param intensity 0 (original) to 1 (full filter)
+     */
+    public void apply(final Lut3D lut, final int[] pixels, int width, int height, float intensity) throws InterruptedException {
+        final int fixedIntensity = Math.max(0, Math.min(256, Math.round(intensity * 256)));
+        if (fixedIntensity == 0) {
+            return;
+        }
+
+        int bands = Math.min(height, parallelism * BANDS_PER_THREAD);
+        if (parallelism == 1 || bands <= 1) {
+            lut.apply(pixels, 0, width * height, fixedIntensity);
+            return;
+        }
+
+        int rowsPerBand = (height + bands - 1) / bands;
+        List<Callable<Void>> tasks = new ArrayList<>(bands);
+        for (int y = 0; y < height; y += rowsPerBand) {
+            final int offset = y * width;
+            final int count = Math.min(rowsPerBand, height - y) * width;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    lut.apply(pixels, offset, count, fixedIntensity);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> band : pool.invokeAll(tasks)) {
+            try {
+                band.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("LUT band failed", e.getCause());
+            }
+        }
+    }
+}
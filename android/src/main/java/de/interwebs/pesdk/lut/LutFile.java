@@ -0,0 +1,131 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.lut;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format for compiled LUTs.
+ *
+ * Header (big endian, 44 bytes):
+ *   magic "PLUT", version, sizeR, sizeG, sizeB, vTiles, hTiles, textureSize,
+ *   data length, CRC32 of the data (as long)
+ * followed by the table data as stored in Lut3D. Loading maps the data read-only,
+ * so a cached LUT never occupies the Java heap.
+ */
+public final class LutFile {
+
+    private static final int MAGIC = 0x504c5554; // PLUT
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 44;
+
+    private LutFile() {}
+
+    public static void write(File file, Lut3D lut, LutLayout layout) throws IOException {
+        ByteBuffer data = lut.data();
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        crc.update(bytes, 0, bytes.length);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(lut.sizeR)
+                .putInt(lut.sizeG)
+                .putInt(lut.sizeB)
+                .putInt(layout.vTiles)
+                .putInt(layout.hTiles)
+                .putInt(layout.textureSize)
+                .putInt(bytes.length)
+                .putLong(crc.getValue());
+
+        // Write next to the target and rename, readers never see a partial file
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(header.array());
+            out.write(bytes);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not move " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Map a LUT file. Throws an IOException if the file is truncated, from another version
+     * or doesn't match its checksum; callers should delete and recompile it then.
+     */
+    public static Lut3D map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Truncated LUT file " + file);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated LUT file " + file);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a LUT file or unsupported version: " + file);
+            }
+            int sizeR = header.getInt();
+            int sizeG = header.getInt();
+            int sizeB = header.getInt();
+            header.getInt(); // vTiles
+            header.getInt(); // hTiles
+            header.getInt(); // textureSize
+            int length = header.getInt();
+            long checksum = header.getLong();
+
+            if (length != sizeR * sizeG * sizeB * 3 || channel.size() != HEADER_SIZE + length) {
+                throw new IOException("Corrupt LUT file " + file);
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+            if (checksum(data) != checksum) {
+                throw new IOException("Checksum mismatch in LUT file " + file);
+            }
+            return new Lut3D(sizeR, sizeG, sizeB, data);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long checksum(ByteBuffer data) {
+        ByteBuffer view = data.duplicate();
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.lut;
+
+/**
+ * Tile layout of a LUT texture: vTiles x hTiles tiles of textureSize x textureSize pixels.
+ *
+ * Custom filter ids encode the layout in their last three segments, e.g. `warm_8_8_64`.
+ */
+public final class LutLayout {
+
+    public static final LutLayout DEFAULT = new LutLayout(5, 5, 128);
+
+    public final int vTiles;
+    public final int hTiles;
+    public final int textureSize;
+
+    public LutLayout(int vTiles, int hTiles, int textureSize) {
+        this.vTiles = vTiles;
+        this.hTiles = hTiles;
+        this.textureSize = textureSize;
+    }
+
+    public static LutLayout fromFilterId(String filterId) {
+        String[] segments = filterId.split("_");
+        if (segments.length >= 4) {
+            return new LutLayout(
+                    Integer.parseInt(segments[segments.length - 3]),
+                    Integer.parseInt(segments[segments.length - 2]),
+                    Integer.parseInt(segments[segments.length - 1])
+            );
+        }
+        return DEFAULT;
+    }
+}
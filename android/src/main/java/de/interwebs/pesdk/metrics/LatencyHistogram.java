@@ -0,0 +1,102 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-scale histogram of durations.
+ *
+ * Every power of two (in ~1µs units) is split into four buckets, so percentiles are accurate to
+ * about 25% from a microsecond up to minutes, in 160 counters. Recording allocates nothing.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 160;
+    // ~1µs
+    private static final int UNIT_SHIFT = 10;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[index(nanos)]++;
+        count++;
+        sum += nanos;
+        min = Math.min(min, nanos);
+        max = Math.max(max, nanos);
+    }
+
+    static int index(long nanos) {
+        long units = nanos >> UNIT_SHIFT;
+        if (units < 4) {
+            return (int) units;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(units);
+        int sub = (int) (units >> (octave - 2)) & 3;
+        return Math.min(BUCKETS - 1, octave * 4 + sub);
+    }
+
+    // Exclusive upper bound of a bucket in nanoseconds
+    static long upperBound(int index) {
+        if (index < 4) {
+            return (long) (index + 1) << UNIT_SHIFT;
+        }
+        int octave = index / 4;
+        int sub = index % 4;
+        return ((5L + sub) << (octave - 2)) << UNIT_SHIFT;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0..100), capped at the max
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long mean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public synchronized long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+}
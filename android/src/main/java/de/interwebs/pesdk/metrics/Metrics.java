@@ -0,0 +1,192 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings of the editor launch and session phases, plus counters.
+ *
+ * A session is followed by its token: the module marks the Activity launch, the tracker marks
+ * when the editor unparcelled its settings and when the export started, and ending the session
+ * turns the marks into durations.
+ */
+public final class Metrics {
+
+    // Histograms
+    public static final String RESOLVE_CATALOG = "resolveCatalog";
+    public static final String BUILD_CONFIG = "buildConfig";
+    public static final String ACTIVITY_LAUNCH = "activityLaunch";
+    public static final String EDITOR = "editor";
+    public static final String EXPORT = "export";
+    public static final String RENDER_OUTPUTS = "renderOutputs";
+    public static final String PROXY = "proxy";
+    public static final String REPLAY = "replay";
+    public static final String METADATA = "metadata";
+
+    // Counters
+    public static final String SESSIONS = "sessions";
+    public static final String SAVED = "saved";
+    public static final String CANCELED = "canceled";
+
+    private static volatile Metrics shared = new Metrics(Clock.SYSTEM);
+
+    private final Clock clock;
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Marks of one session, any clock value is a valid mark, so whether one was taken is kept apart
+    private static final class Session {
+        final long launched;
+        volatile long shown;
+        volatile boolean isShown;
+        volatile long exportStarted;
+        volatile boolean isExportStarted;
+
+        Session(long launched) {
+            this.launched = launched;
+        }
+    }
+
+    public Metrics(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Instance the module and the tracker record into
+    public static Metrics shared() {
+        return shared;
+    }
+
+    // e.g. new Metrics(new ManualClock()) in tests
+    public static void setShared(Metrics metrics) {
+        shared = metrics;
+    }
+
+    public long now() {
+        return clock.nanoTime();
+    }
+
+    public void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    // Records the time since start, which came from now()
+    public long recordSince(String name, long start) {
+        long duration = clock.nanoTime() - start;
+        record(name, duration);
+        return duration;
+    }
+
+    public void increment(String counter) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = counters.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.incrementAndGet();
+    }
+
+    public void sessionLaunched(String token) {
+        sessions.put(token, new Session(clock.nanoTime()));
+        increment(SESSIONS);
+    }
+
+    // The editor may unparcel its settings more than once, only the first time counts
+    public void sessionShown(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null && !session.isShown) {
+            session.shown = clock.nanoTime();
+            session.isShown = true;
+            record(ACTIVITY_LAUNCH, session.shown - session.launched);
+        }
+    }
+
+    public void exportStarted(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null && !session.isExportStarted) {
+            session.exportStarted = clock.nanoTime();
+            session.isExportStarted = true;
+        }
+    }
+
+    // Returns how long the export took, -1 if none was started
+    public long sessionEnded(String token, boolean saved) {
+        Session session = token != null ? sessions.remove(token) : null;
+        increment(saved ? SAVED : CANCELED);
+        if (session == null || !session.isShown) {
+            return -1;
+        }
+
+        long now = clock.nanoTime();
+        long editorEnd = session.isExportStarted ? session.exportStarted : now;
+        record(EDITOR, editorEnd - session.shown);
+        if (!session.isExportStarted) {
+            return -1;
+        }
+        record(EXPORT, now - session.exportStarted);
+        return now - session.exportStarted;
+    }
+
+    public Map<String, LatencyHistogram> histograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public Map<String, Long> counters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    // One line per histogram and one for the counters, times in ms
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            out.append(String.format(Locale.US, "%s: n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                    entry.getKey(), histogram.count(),
+                    millis(histogram.percentile(50)), millis(histogram.percentile(95)),
+                    millis(histogram.percentile(99)), millis(histogram.max())));
+        }
+        out.append(counters());
+        return out.toString();
+    }
+
+    public static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs stages over an image in horizontal bands, so memory depends on the band height rather
+ * than the image: one buffer of bandHeight plus twice the stages' overlap rows.
+ *
+ * Each band is read with the overlap of all stages above and below it, every stage runs on the
+ * whole buffer and only the band's own rows are written. Those only ever saw complete context,
+ * so the output is the same as running the stages over the whole image at once.
+ */
+public final class BandRenderer {
+
+    private BandRenderer() {}
+
+    public static void render(int width, int height, int bandHeight, BandSource source, List<BandStage> stages, BandSink sink) throws IOException {
+        if (width <= 0 || height <= 0 || bandHeight <= 0) {
+            throw new IllegalArgumentException("Invalid band " + width + "x" + bandHeight + " of " + width + "x" + height);
+        }
+
+        int margin = margin(stages);
+        int[] pixels = new int[width * (Math.min(bandHeight, height) + 2 * margin)];
+        for (int top = 0; top < height; top += bandHeight) {
+            int rows = Math.min(bandHeight, height - top);
+            int readTop = Math.max(0, top - margin);
+            int readRows = Math.min(height, top + rows + margin) - readTop;
+
+            source.read(readTop, readRows, pixels);
+            for (BandStage stage : stages) {
+                stage.apply(pixels, width, readTop, readRows);
+            }
+            sink.write(pixels, (top - readTop) * width, rows);
+        }
+    }
+
+    // Bytes of the band buffer
+    public static long bufferBytes(int width, int height, int bandHeight, List<BandStage> stages) {
+        return 4L * width * (Math.min(bandHeight, height) + 2 * margin(stages));
+    }
+
+    private static int margin(List<BandStage> stages) {
+        int margin = 0;
+        for (BandStage stage : stages) {
+            margin += stage.overlap();
+        }
+        return margin;
+    }
+}
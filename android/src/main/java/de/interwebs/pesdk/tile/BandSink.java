@@ -0,0 +1,21 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import java.io.IOException;
+
+/**
+ * Where finished rows go, top to bottom, e.g. a JpegWriter.
+ */
+public interface BandSink {
+
+    // rows rows of ARGB pixels starting at offset, each as wide as the image
+    void write(int[] pixels, int offset, int rows) throws IOException;
+}
@@ -0,0 +1,21 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import java.io.IOException;
+
+/**
+ * Rows of the output image before any stage ran, e.g. decoded, cropped and rotated.
+ */
+public interface BandSource {
+
+    // Rows [top, top + rows) as ARGB, row after row from the start of pixels
+    void read(int top, int rows, int[] pixels) throws IOException;
+}
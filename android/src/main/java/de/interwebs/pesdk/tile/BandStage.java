@@ -0,0 +1,28 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import java.io.IOException;
+
+/**
+ * One step of the per-pixel work on a band, e.g. a filter or an overlay.
+ *
+ * A stage may only look at rows within overlap() of the row it writes. The band handed to it
+ * carries that many more rows above and below, rows near the band's edges come out wrong and
+ * are cut off afterwards.
+ */
+public interface BandStage {
+
+    // Rows of context above and below, e.g. a blur's radius, 0 for per-pixel stages
+    int overlap();
+
+    // pixels holds rows [top, top + rows) of the image, width pixels each
+    void apply(int[] pixels, int width, int top, int rows) throws IOException;
+}
@@ -0,0 +1,434 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Baseline JPEG encoder that takes the image a few rows at a time, so an image can be encoded
+ * without ever holding all of it: only one 16 row strip of MCUs is buffered.
+ *
+ * Writes YCbCr 4:2:0 with the example tables of the JPEG standard (Annex K), scaled by quality
+ * the way libjpeg does. Alpha is ignored. The caller buffers and closes the stream.
+ */
+public final class JpegWriter implements BandSink {
+
+    private static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10, 17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34, 27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36, 29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46, 53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    private static final int[] LUMA_QUANT = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    private static final int[] CHROMA_QUANT = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    private static final int[] DC_LUMA_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_CHROMA_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    private static final int[] DC_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+
+    private static final int[] AC_LUMA_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d};
+    private static final int[] AC_LUMA_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08, 0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16, 0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    private static final int[] AC_CHROMA_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    private static final int[] AC_CHROMA_VALUES = {
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34, 0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    // Scale factors of the AAN DCT's outputs
+    private static final double[] AAN_SCALE = {
+            1.0, 1.387039845, 1.306562965, 1.175875602, 1.0, 0.785694958, 0.541196100, 0.275899379
+    };
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+
+    private final int[] lumaQuant;
+    private final int[] chromaQuant;
+    // Multipliers from DCT output to quantized coefficient, natural order
+    private final float[] lumaDivisors;
+    private final float[] chromaDivisors;
+
+    // Code and length per symbol
+    private final int[][] dcLuma;
+    private final int[][] dcChroma;
+    private final int[][] acLuma;
+    private final int[][] acChroma;
+
+    // Up to 16 rows waiting for a complete strip of MCUs
+    private final int[] strip;
+    private int stripRows;
+    private int rowsWritten;
+
+    private final float[] y = new float[256];
+    private final float[] cb = new float[256];
+    private final float[] cr = new float[256];
+    private final float[] block = new float[64];
+    private final int[] coefficients = new int[64];
+    private int dcY;
+    private int dcCb;
+    private int dcCr;
+
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * Writes the headers right away.
+     *
+     * @param quality 1..100
+     */
+    public JpegWriter(OutputStream out, int width, int height, int quality) throws IOException {
+        if (width <= 0 || height <= 0 || width > 65535 || height > 65535) {
+            throw new IllegalArgumentException("Can't encode " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+
+        int scale = quality <= 0 ? 5000 : quality < 50 ? 5000 / quality : 200 - 2 * Math.min(100, quality);
+        lumaQuant = scaleQuant(LUMA_QUANT, scale);
+        chromaQuant = scaleQuant(CHROMA_QUANT, scale);
+        lumaDivisors = divisors(lumaQuant);
+        chromaDivisors = divisors(chromaQuant);
+
+        dcLuma = huffmanCodes(DC_LUMA_BITS, DC_VALUES);
+        dcChroma = huffmanCodes(DC_CHROMA_BITS, DC_VALUES);
+        acLuma = huffmanCodes(AC_LUMA_BITS, AC_LUMA_VALUES);
+        acChroma = huffmanCodes(AC_CHROMA_BITS, AC_CHROMA_VALUES);
+
+        strip = new int[width * 16];
+        writeHeaders();
+    }
+
+    private static int[] scaleQuant(int[] base, int scale) {
+        int[] table = new int[64];
+        for (int i = 0; i < 64; i++) {
+            table[i] = Math.max(1, Math.min(255, (base[i] * scale + 50) / 100));
+        }
+        return table;
+    }
+
+    private static float[] divisors(int[] quant) {
+        float[] divisors = new float[64];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                divisors[row * 8 + col] = (float) (1.0 / (quant[row * 8 + col] * AAN_SCALE[row] * AAN_SCALE[col] * 8.0));
+            }
+        }
+        return divisors;
+    }
+
+    private static int[][] huffmanCodes(int[] bits, int[] values) {
+        int[][] codes = new int[256][];
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            for (int i = 0; i < bits[length - 1]; i++) {
+                codes[values[k++]] = new int[]{code++, length};
+            }
+            code <<= 1;
+        }
+        return codes;
+    }
+
+    @Override
+    public void write(int[] pixels, int offset, int rows) throws IOException {
+        if (rowsWritten + stripRows + rows > height) {
+            throw new IllegalStateException("More rows than the image's " + height);
+        }
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(pixels, offset + row * width, strip, stripRows * width, width);
+            if (++stripRows == 16) {
+                encodeStrip();
+            }
+        }
+    }
+
+    // After the last row, writes what is left and the end of the image
+    public void finish() throws IOException {
+        if (rowsWritten + stripRows != height) {
+            throw new IllegalStateException("Got " + (rowsWritten + stripRows) + " of " + height + " rows");
+        }
+        if (stripRows > 0) {
+            // The last strip repeats its last row
+            for (int row = stripRows; row < 16; row++) {
+                System.arraycopy(strip, (stripRows - 1) * width, strip, row * width, width);
+            }
+            encodeStrip();
+        }
+        // Pad the last byte with ones
+        if (bitCount > 0) {
+            writeBits(0x7f, 7);
+        }
+        out.write(0xff);
+        out.write(0xd9);
+    }
+
+    private void encodeStrip() throws IOException {
+        for (int x = 0; x < width; x += 16) {
+            for (int row = 0; row < 16; row++) {
+                for (int col = 0; col < 16; col++) {
+                    int color = strip[row * width + Math.min(x + col, width - 1)];
+                    float r = (color >> 16) & 0xff;
+                    float g = (color >> 8) & 0xff;
+                    float b = color & 0xff;
+                    int i = row * 16 + col;
+                    y[i] = 0.299f * r + 0.587f * g + 0.114f * b - 128f;
+                    cb[i] = -0.168736f * r - 0.331264f * g + 0.5f * b;
+                    cr[i] = 0.5f * r - 0.418688f * g - 0.081312f * b;
+                }
+            }
+
+            for (int by = 0; by < 16; by += 8) {
+                for (int bx = 0; bx < 16; bx += 8) {
+                    for (int row = 0; row < 8; row++) {
+                        System.arraycopy(y, (by + row) * 16 + bx, block, row * 8, 8);
+                    }
+                    dcY = encodeBlock(dcY, lumaDivisors, dcLuma, acLuma);
+                }
+            }
+            subsample(cb);
+            dcCb = encodeBlock(dcCb, chromaDivisors, dcChroma, acChroma);
+            subsample(cr);
+            dcCr = encodeBlock(dcCr, chromaDivisors, dcChroma, acChroma);
+        }
+        rowsWritten += stripRows;
+        stripRows = 0;
+    }
+
+    // Average of every 2x2 pixels into block
+    private void subsample(float[] plane) {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                int i = row * 32 + col * 2;
+                block[row * 8 + col] = (plane[i] + plane[i + 1] + plane[i + 16] + plane[i + 17]) * 0.25f;
+            }
+        }
+    }
+
+    // Transforms, quantizes and writes block, returns its DC value for the next block's delta
+    private int encodeBlock(int previousDc, float[] divisors, int[][] dcCodes, int[][] acCodes) throws IOException {
+        forwardDct(block);
+        for (int i = 0; i < 64; i++) {
+            // Rounds half away from zero
+            float value = block[i] * divisors[i];
+            coefficients[i] = (int) (value + 16384.5f) - 16384;
+        }
+
+        int dc = coefficients[0];
+        writeValue(dc - previousDc, dcCodes, 0);
+
+        int zeros = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = coefficients[ZIGZAG[k]];
+            if (value == 0) {
+                zeros++;
+                continue;
+            }
+            while (zeros >= 16) {
+                writeCode(acCodes[0xf0]);
+                zeros -= 16;
+            }
+            writeValue(value, acCodes, zeros << 4);
+            zeros = 0;
+        }
+        if (zeros > 0) {
+            writeCode(acCodes[0x00]);
+        }
+        return dc;
+    }
+
+    // Huffman code of the run and value's category, then the value's bits
+    private void writeValue(int value, int[][] codes, int run) throws IOException {
+        int magnitude = value < 0 ? -value : value;
+        int category = 0;
+        while (magnitude != 0) {
+            category++;
+            magnitude >>= 1;
+        }
+        writeCode(codes[run | category]);
+        if (category > 0) {
+            writeBits(value < 0 ? value - 1 : value, category);
+        }
+    }
+
+    private void writeCode(int[] code) throws IOException {
+        writeBits(code[0], code[1]);
+    }
+
+    private void writeBits(int bits, int count) throws IOException {
+        bitBuffer = (bitBuffer << count) | (bits & ((1 << count) - 1));
+        bitCount += count;
+        while (bitCount >= 8) {
+            int b = (bitBuffer >> (bitCount - 8)) & 0xff;
+            out.write(b);
+            // A 0xff in the scan is followed by a 0 so it isn't read as a marker
+            if (b == 0xff) {
+                out.write(0);
+            }
+            bitCount -= 8;
+        }
+    }
+
+    // Floating point AAN DCT in place, rows then columns
+    private static void forwardDct(float[] data) {
+        for (int i = 0; i < 64; i += 8) {
+            dct8(data, i, 1);
+        }
+        for (int i = 0; i < 8; i++) {
+            dct8(data, i, 8);
+        }
+    }
+
+    private static void dct8(float[] d, int o, int s) {
+        float tmp0 = d[o] + d[o + 7 * s];
+        float tmp7 = d[o] - d[o + 7 * s];
+        float tmp1 = d[o + s] + d[o + 6 * s];
+        float tmp6 = d[o + s] - d[o + 6 * s];
+        float tmp2 = d[o + 2 * s] + d[o + 5 * s];
+        float tmp5 = d[o + 2 * s] - d[o + 5 * s];
+        float tmp3 = d[o + 3 * s] + d[o + 4 * s];
+        float tmp4 = d[o + 3 * s] - d[o + 4 * s];
+
+        // Even part
+        float tmp10 = tmp0 + tmp3;
+        float tmp13 = tmp0 - tmp3;
+        float tmp11 = tmp1 + tmp2;
+        float tmp12 = tmp1 - tmp2;
+
+        d[o] = tmp10 + tmp11;
+        d[o + 4 * s] = tmp10 - tmp11;
+
+        float z1 = (tmp12 + tmp13) * 0.707106781f;
+        d[o + 2 * s] = tmp13 + z1;
+        d[o + 6 * s] = tmp13 - z1;
+
+        // Odd part
+        tmp10 = tmp4 + tmp5;
+        tmp11 = tmp5 + tmp6;
+        tmp12 = tmp6 + tmp7;
+
+        float z5 = (tmp10 - tmp12) * 0.382683433f;
+        float z2 = 0.541196100f * tmp10 + z5;
+        float z4 = 1.306562965f * tmp12 + z5;
+        float z3 = tmp11 * 0.707106781f;
+
+        float z11 = tmp7 + z3;
+        float z13 = tmp7 - z3;
+
+        d[o + 5 * s] = z13 + z2;
+        d[o + 3 * s] = z13 - z2;
+        d[o + s] = z11 + z4;
+        d[o + 7 * s] = z11 - z4;
+    }
+
+    private void writeHeaders() throws IOException {
+        // SOI, then a JFIF APP0 without thumbnail
+        out.write(new byte[]{
+                (byte) 0xff, (byte) 0xd8,
+                (byte) 0xff, (byte) 0xe0, 0, 16, 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0
+        });
+
+        // DQT, both tables in zigzag order
+        marker(0xdb, 2 + 2 * 65);
+        out.write(0);
+        for (int i = 0; i < 64; i++) {
+            out.write(lumaQuant[ZIGZAG[i]]);
+        }
+        out.write(1);
+        for (int i = 0; i < 64; i++) {
+            out.write(chromaQuant[ZIGZAG[i]]);
+        }
+
+        // SOF0: 8 bit, Y sampled 2x2 on table 0, Cb and Cr 1x1 on table 1
+        marker(0xc0, 17);
+        out.write(8);
+        writeShort(height);
+        writeShort(width);
+        out.write(3);
+        out.write(new byte[]{1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1});
+
+        // DHT
+        marker(0xc4, 2 + 4 * 17 + DC_VALUES.length * 2 + AC_LUMA_VALUES.length + AC_CHROMA_VALUES.length);
+        writeTable(0x00, DC_LUMA_BITS, DC_VALUES);
+        writeTable(0x10, AC_LUMA_BITS, AC_LUMA_VALUES);
+        writeTable(0x01, DC_CHROMA_BITS, DC_VALUES);
+        writeTable(0x11, AC_CHROMA_BITS, AC_CHROMA_VALUES);
+
+        // SOS over all three components, full spectral range
+        marker(0xda, 12);
+        out.write(3);
+        out.write(new byte[]{1, 0x00, 2, 0x11, 3, 0x11, 0, 63, 0});
+    }
+
+    private void writeTable(int classAndId, int[] bits, int[] values) throws IOException {
+        out.write(classAndId);
+        for (int count : bits) {
+            out.write(count);
+        }
+        for (int value : values) {
+            out.write(value);
+        }
+    }
+
+    private void marker(int marker, int length) throws IOException {
+        out.write(0xff);
+        out.write(marker);
+        writeShort(length);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value >> 8 & 0xff);
+        out.write(value & 0xff);
+    }
+}
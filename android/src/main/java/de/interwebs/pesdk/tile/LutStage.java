@@ -0,0 +1,37 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+import de.interwebs.pesdk.lut.Lut3D;
+
+/**
+ * Filter stage, a LUT applied to every pixel.
+ */
+public final class LutStage implements BandStage {
+
+    private final Lut3D lut;
+    private final int intensity;
+
+    // intensity within 0..256
+    public LutStage(Lut3D lut, int intensity) {
+        this.lut = lut;
+        this.intensity = intensity;
+    }
+
+    @Override
+    public int overlap() {
+        return 0;
+    }
+
+    @Override
+    public void apply(int[] pixels, int width, int top, int rows) {
+        lut.apply(pixels, 0, width * rows, intensity);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.tile;
+
+/**
+ * How stored pixels are turned into what is shown: mirrored horizontally first if mirrored,
+ * then rotated clockwise. Covers all eight EXIF orientations and a recipe's rotation on top.
+ *
+ * Rectangles are {left, top, right, bottom}. Relative ones are fractions of the image, pixel
+ * ones are relative to a crop of the stored image, see region and copy.
+ */
+public final class Orientation {
+
+    public static final Orientation NORMAL = new Orientation(0, false);
+
+    // Clockwise degrees, 0, 90, 180 or 270
+    public final int rotation;
+    public final boolean mirrored;
+
+    public Orientation(int rotation, boolean mirrored) {
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation has to be a multiple of 90, got " + rotation);
+        }
+        this.rotation = (rotation % 360 + 360) % 360;
+        this.mirrored = mirrored;
+    }
+
+    // From the EXIF Orientation tag, anything unknown is normal
+    public static Orientation exif(int value) {
+        switch (value) {
+            case 2:
+                return new Orientation(0, true);
+            case 3:
+                return new Orientation(180, false);
+            case 4:
+                return new Orientation(180, true);
+            case 5:
+                return new Orientation(270, true);
+            case 6:
+                return new Orientation(90, false);
+            case 7:
+                return new Orientation(90, true);
+            case 8:
+                return new Orientation(270, false);
+            default:
+                return NORMAL;
+        }
+    }
+
+    // This orientation rotated further by degrees clockwise
+    public Orientation rotate(int degrees) {
+        return degrees % 360 == 0 ? this : new Orientation(rotation + degrees, mirrored);
+    }
+
+    public boolean isNormal() {
+        return rotation == 0 && !mirrored;
+    }
+
+    // Width and height trade places
+    public boolean swapsAxes() {
+        return rotation % 180 != 0;
+    }
+
+    // The stored rect of a rect relative to what is shown, i.e. this orientation undone
+    public float[] sourceRect(float left, float top, float right, float bottom) {
+        float[] rect;
+        switch (rotation) {
+            case 90:
+                rect = new float[]{top, 1 - right, bottom, 1 - left};
+                break;
+            case 180:
+                rect = new float[]{1 - right, 1 - bottom, 1 - left, 1 - top};
+                break;
+            case 270:
+                rect = new float[]{1 - bottom, left, 1 - top, right};
+                break;
+            default:
+                rect = new float[]{left, top, right, bottom};
+                break;
+        }
+        if (mirrored) {
+            float flippedLeft = 1 - rect[2];
+            rect[2] = 1 - rect[0];
+            rect[0] = flippedLeft;
+        }
+        return rect;
+    }
+
+    /**
+     * Rect of a cropWidth x cropHeight crop of the stored image that shows as rows [top, top + rows)
+     * of its oriented copy, relative to the crop.
+     */
+    public int[] region(int cropWidth, int cropHeight, int top, int rows) {
+        int[] region;
+        switch (rotation) {
+            case 90:
+                region = new int[]{top, 0, top + rows, cropHeight};
+                break;
+            case 180:
+                region = new int[]{0, cropHeight - top - rows, cropWidth, cropHeight - top};
+                break;
+            case 270:
+                region = new int[]{cropWidth - top - rows, 0, cropWidth - top, cropHeight};
+                break;
+            default:
+                region = new int[]{0, top, cropWidth, top + rows};
+                break;
+        }
+        if (mirrored) {
+            int flippedLeft = cropWidth - region[2];
+            region[2] = cropWidth - region[0];
+            region[0] = flippedLeft;
+        }
+        return region;
+    }
+
+    /**
+     * Copies the pixels of a region, as given by region, oriented into rows of width pixels.
+     * Pixel for pixel what mirroring and rotating the whole crop would give for those rows.
+     */
+    public void copy(int[] source, int regionWidth, int regionHeight, int[] pixels, int width, int rows) {
+        for (int y = 0; y < regionHeight; y++) {
+            for (int x = 0; x < regionWidth; x++) {
+                int sx = mirrored ? regionWidth - 1 - x : x;
+                int target;
+                switch (rotation) {
+                    case 90:
+                        target = sx * width + (regionHeight - 1 - y);
+                        break;
+                    case 180:
+                        target = (rows - 1 - y) * width + (regionWidth - 1 - sx);
+                        break;
+                    case 270:
+                        target = (rows - 1 - sx) * width + y;
+                        break;
+                    default:
+                        target = y * width + sx;
+                        break;
+                }
+                pixels[target] = source[y * regionWidth + x];
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Orientation && ((Orientation) o).rotation == rotation && ((Orientation) o).mirrored == mirrored;
+    }
+
+    @Override
+    public int hashCode() {
+        return rotation * 2 + (mirrored ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return rotation + (mirrored ? " mirrored" : "");
+    }
+}
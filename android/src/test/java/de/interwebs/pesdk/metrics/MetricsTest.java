@@ -0,0 +1,137 @@
+/**
+ * PhotoEditorSDK ReactNative Module
+ *
+ * Created 08/2017 by Interwebs UG (haftungsbeschränkt)
+ * @author Michel Albers <m.albers@interwebs-ug.de>
+ * @license Unlicense (unlicense.org)
+ *
+ */
+
+package de.interwebs.pesdk.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Session timings on a clock that starts at 0 and only moves when told to.
+ */
+public class MetricsTest {
+
+    private static final String TOKEN = "session";
+
+    private ManualClock clock;
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock();
+        metrics = new Metrics(clock);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setShared(new Metrics(Clock.SYSTEM));
+    }
+
+    @Test
+    public void sessionPhasesAreTimedExactly() {
+        metrics.sessionLaunched(TOKEN);
+        clock.advance(300, TimeUnit.MILLISECONDS);
+        metrics.sessionShown(TOKEN);
+        clock.advance(5, TimeUnit.SECONDS);
+        metrics.exportStarted(TOKEN);
+        clock.advance(800, TimeUnit.MILLISECONDS);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(800), metrics.sessionEnded(TOKEN, true));
+        assertOnly(Metrics.ACTIVITY_LAUNCH, TimeUnit.MILLISECONDS.toNanos(300));
+        assertOnly(Metrics.EDITOR, TimeUnit.SECONDS.toNanos(5));
+        assertOnly(Metrics.EXPORT, TimeUnit.MILLISECONDS.toNanos(800));
+        assertEquals(Long.valueOf(1), metrics.counters().get(Metrics.SAVED));
+    }
+
+    @Test
+    public void marksAtZeroCount() {
+        // Launched, shown and exported before the clock ever moved
+        metrics.sessionLaunched(TOKEN);
+        metrics.sessionShown(TOKEN);
+        metrics.exportStarted(TOKEN);
+        clock.advance(2, TimeUnit.SECONDS);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(2), metrics.sessionEnded(TOKEN, true));
+        assertOnly(Metrics.ACTIVITY_LAUNCH, 0);
+        assertOnly(Metrics.EDITOR, 0);
+        assertOnly(Metrics.EXPORT, TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void onlyTheFirstMarkCounts() {
+        metrics.sessionLaunched(TOKEN);
+        metrics.sessionShown(TOKEN);
+        metrics.exportStarted(TOKEN);
+        clock.advance(1, TimeUnit.SECONDS);
+        metrics.sessionShown(TOKEN);
+        metrics.exportStarted(TOKEN);
+        clock.advance(1, TimeUnit.SECONDS);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(2), metrics.sessionEnded(TOKEN, true));
+        assertOnly(Metrics.ACTIVITY_LAUNCH, 0);
+        assertOnly(Metrics.EDITOR, 0);
+    }
+
+    @Test
+    public void canceledWithoutExport() {
+        metrics.sessionLaunched(TOKEN);
+        clock.advance(200, TimeUnit.MILLISECONDS);
+        metrics.sessionShown(TOKEN);
+        clock.advance(3, TimeUnit.SECONDS);
+
+        assertEquals(-1, metrics.sessionEnded(TOKEN, false));
+        assertOnly(Metrics.EDITOR, TimeUnit.SECONDS.toNanos(3));
+        assertFalse(metrics.histograms().containsKey(Metrics.EXPORT));
+        assertEquals(Long.valueOf(1), metrics.counters().get(Metrics.CANCELED));
+    }
+
+    @Test
+    public void neverShown() {
+        metrics.sessionLaunched(TOKEN);
+        clock.advance(1, TimeUnit.SECONDS);
+
+        assertEquals(-1, metrics.sessionEnded(TOKEN, false));
+        assertEquals(-1, metrics.sessionEnded("unknown", false));
+        assertFalse(metrics.histograms().containsKey(Metrics.ACTIVITY_LAUNCH));
+        assertFalse(metrics.histograms().containsKey(Metrics.EDITOR));
+    }
+
+    @Test
+    public void recordSinceUsesTheClock() {
+        long start = metrics.now();
+        clock.advance(40, TimeUnit.MILLISECONDS);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(40), metrics.recordSince(Metrics.BUILD_CONFIG, start));
+        assertOnly(Metrics.BUILD_CONFIG, TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void sharedIsReadAtEachUse() {
+        Metrics.setShared(metrics);
+        Metrics.shared().sessionLaunched(TOKEN);
+        clock.advance(100, TimeUnit.MILLISECONDS);
+        Metrics.shared().sessionShown(TOKEN);
+
+        assertSame(metrics, Metrics.shared());
+        assertOnly(Metrics.ACTIVITY_LAUNCH, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    private void assertOnly(String histogram, long nanos) {
+        LatencyHistogram recorded = metrics.histograms().get(histogram);
+        assertEquals(histogram, 1, recorded.count());
+        assertEquals(histogram, nanos, recorded.max());
+    }
+}
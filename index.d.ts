@@ -8,7 +8,55 @@ declare module "photo-editor-sdk-react-native" {
   const overlayTool: any;
   const brushTool: any;
   const magic: any;
+  const catalogKey: string;
+  const exportDirectoryKey: string;
+  const exportFolderKey: string;
+  const exportPrefixKey: string;
+  const exportFormatKey: string;
+  const exportQualityKey: string;
+  const exportAsyncKey: string;
+  const outputsKey: string;
+  const savePolicyKey: string;
+  const richResultKey: string;
+  const proxyKey: string;
+  const exportMetadataKey: string;
+  const batchProgressEvent: string;
+  const queueResultEvent: string;
+  const editorEvent: string;
+  const exportProgressEvent: string;
+  const exportReadyEvent: string;
+  const exportFailedEvent: string;
 
-  export function openEditor(imagePath: string, features: any[], options: object): Promise<string>;
-  export function openCamera(features: any[], options: object): Promise<string>;
+  type ExportOutput = { name: string, path: string, width: number, height: number };
+  type ShortCircuit = 'source' | 'link' | 'copy' | null;
+  type EditSummary = { filter: string | null, filterIntensity: number, cropAspect: string | null, layers: number, stickers: number, texts: number };
+  type ResultInfo = { width: number, height: number, size: number, mimeType: string | null, orientation: number, exportTime: number, edits: EditSummary | null, proxy: 'replayed' | 'kept' | null };
+  type EditorResult = string
+    | ({ exportId: string, path: string } & Partial<ResultInfo>)
+    | ({ path: string, shortCircuit?: ShortCircuit, outputs?: ExportOutput[] } & Partial<ResultInfo>);
+
+  // Resolves with { exportId, path } if the options set exportAsyncKey, with { path, shortCircuit, outputs } if they set savePolicyKey or outputsKey.
+  // richResultKey adds the ResultInfo fields to either
+  // imagePath may be a content:// URI on Android
+  export function openEditor(imagePath: string, features: any[], options: object, custom?: object): Promise<EditorResult>;
+  export function openCamera(features: any[], options: object, custom?: object): Promise<EditorResult>;
+  export function openEditorQueue(imagePaths: string[], features: any[], options: object, custom?: object): Promise<(string | null)[]>;
+
+  export function cancelExport(exportId: string): Promise<boolean>;
+
+  export function startEditorEvents(maxPerSecond: number): void;
+  export function stopEditorEvents(): void;
+
+  export function getMetrics(): Promise<{ timings: { [name: string]: { count: number, p50: number, p95: number, p99: number, min: number, max: number, mean: number } }, counters: { [name: string]: number } }>;
+  export function resetMetrics(): void;
+  export function setMetricsLogInterval(intervalSeconds: number): void;
+
+  export function registerCatalog(id: string, custom: object): Promise<{ id: string, compileTime: number }>;
+  export function unregisterCatalog(id: string): Promise<boolean>;
+  export function clearCatalogs(): void;
+
+  export function getThumbnailCacheStats(): Promise<{ hits: number, misses: number, written: number, evictions: number, size: number, maxSize: number }>;
+  export function preload(features: any[], custom?: object): Promise<{ coldTime: number, warmTime: number, compileTime: number, decodedThumbnails: number, luts: number }>;
+
+  export function renderBatch(paths: string[], recipe: object, options?: { outputDir?: string, prefix?: string, quality?: number, maxEdge?: number, memoryBudget?: number, bandHeight?: number, metadata?: boolean | string[] }): Promise<{ batchId: string, succeeded: number, failed: number, cached: number, duration: number, imagesPerMinute: number }>;
 }